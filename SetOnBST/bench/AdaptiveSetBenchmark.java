@@ -0,0 +1,144 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import components.set.Set;
+
+/**
+ * Sweeps set sizes and, for each, compares {@code AdaptiveSet} with
+ * {@code Set3a}: retained heap per set, nanoseconds per {@code contains}, and
+ * nanoseconds per {@code removeAny} followed by re-adding the removed
+ * element.
+ *
+ * <p>
+ * Usage: {@code java AdaptiveSetBenchmark [threshold] [maxSize]}
+ * </p>
+ *
+ * @author Shyam Sai Bethina and Yihone Chu
+ *
+ */
+public final class AdaptiveSetBenchmark {
+
+    /**
+     * Total number of elements held across all the sets built for one size,
+     * so small sizes are measured over many sets.
+     */
+    private static final int ELEMENTS_PER_ROUND = 200000;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private AdaptiveSetBenchmark() {
+    }
+
+    /**
+     * Factory for the sets being compared.
+     */
+    private interface Factory {
+
+        /**
+         * Returns a new empty set.
+         *
+         * @return the new set
+         */
+        Set<Integer> create();
+
+    }
+
+    /**
+     * Returns the heap currently in use, after asking for a collection.
+     *
+     * @return bytes of heap in use
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Builds enough sets of {@code size} random elements to hold
+     * {@code ELEMENTS_PER_ROUND} elements in total, then prints bytes per set,
+     * nanoseconds per {@code contains}, and nanoseconds per {@code removeAny}
+     * followed by an {@code add} of the removed element.
+     *
+     * @param label
+     *            the name printed for this run
+     * @param factory
+     *            creates the sets
+     * @param size
+     *            the number of elements per set
+     */
+    private static void run(String label, Factory factory, int size) {
+        int sets = Math.max(1, ELEMENTS_PER_ROUND / size);
+        Random random = new Random(size);
+        int[][] keys = new int[sets][size];
+        for (int s = 0; s < sets; s++) {
+            for (int k = 0; k < size; k++) {
+                keys[s][k] = random.nextInt();
+            }
+        }
+
+        long before = usedHeap();
+        List<Set<Integer>> built = new ArrayList<>(sets);
+        for (int s = 0; s < sets; s++) {
+            Set<Integer> set = factory.create();
+            for (int k = 0; k < size; k++) {
+                if (!set.contains(keys[s][k])) {
+                    set.add(keys[s][k]);
+                }
+            }
+            built.add(set);
+        }
+        long bytes = usedHeap() - before;
+
+        long t0 = System.nanoTime();
+        int found = 0;
+        for (int s = 0; s < sets; s++) {
+            Set<Integer> set = built.get(s);
+            for (int k = 0; k < size; k++) {
+                if (set.contains(keys[s][k])) {
+                    found++;
+                }
+            }
+        }
+        long t1 = System.nanoTime();
+        for (int s = 0; s < sets; s++) {
+            Set<Integer> set = built.get(s);
+            Integer x = set.removeAny();
+            set.add(x);
+        }
+        long t2 = System.nanoTime();
+
+        System.out.printf(
+                "%-12s size %6d   %9.1f bytes/set   contains %7.1f ns"
+                        + "   removeAny+add %8.1f ns%n",
+                label, size, (double) bytes / sets,
+                (double) (t1 - t0) / ((long) sets * size),
+                (double) (t2 - t1) / sets);
+        if (found < 0) {
+            throw new AssertionError();
+        }
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        final int threshold = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int maxSize = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+
+        System.out.println("AdaptiveSet threshold " + threshold);
+        for (int size = 1; size <= maxSize; size *= 2) {
+            run("Set3a", () -> new Set3a<Integer>(), size);
+            run("AdaptiveSet", () -> new AdaptiveSet<Integer>(threshold),
+                    size);
+        }
+    }
+
+}
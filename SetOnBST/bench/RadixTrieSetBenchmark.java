@@ -0,0 +1,141 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import components.set.Set;
+
+/**
+ * Compares lookups in {@code Set3a<String>} and {@code RadixTrieSet} on keys
+ * shaped like real URLs and file paths, which share long leading prefixes.
+ * Reports build time and nanoseconds per successful and unsuccessful
+ * {@code contains} for each set size.
+ *
+ * <p>
+ * Usage: {@code java RadixTrieSetBenchmark [maxSize]}
+ * </p>
+ *
+ * @author Shyam Sai Bethina and Yihone Chu
+ *
+ */
+public final class RadixTrieSetBenchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private RadixTrieSetBenchmark() {
+    }
+
+    /**
+     * Returns {@code n} distinct keys: half API URLs and half file paths, all
+     * with long shared prefixes and short distinguishing tails.
+     *
+     * @param n
+     *            the number of keys
+     * @param random
+     *            the source of randomness
+     * @return the keys, shuffled
+     */
+    private static List<String> keys(int n, Random random) {
+        List<String> keys = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            if (i % 2 == 0) {
+                keys.add("https://api.internal.example.com/v2/tenants/"
+                        + (i % 17) + "/projects/" + (i % 101) + "/items/" + i);
+            } else {
+                keys.add("/var/lib/service/data/shards/" + (i % 13)
+                        + "/segments/" + (i % 97) + "/chunk-" + i + ".bin");
+            }
+        }
+        Collections.shuffle(keys, random);
+        return keys;
+    }
+
+    /**
+     * Builds {@code set} from {@code keys}, looks up every key and a miss for
+     * each key, and prints the timings.
+     *
+     * @param label
+     *            the name printed for this run
+     * @param set
+     *            the empty set to fill
+     * @param keys
+     *            the keys
+     */
+    private static void run(String label, Set<String> set, List<String> keys) {
+        long t0 = System.nanoTime();
+        for (String key : keys) {
+            set.add(key);
+        }
+        long built = System.nanoTime();
+
+        int found = 0;
+        for (String key : keys) {
+            if (set.contains(key)) {
+                found++;
+            }
+        }
+        long hits = System.nanoTime();
+        for (String key : keys) {
+            if (set.contains(key + "/")) {
+                found--;
+            }
+        }
+        long misses = System.nanoTime();
+
+        if (found != keys.size()) {
+            throw new AssertionError(label + " lookups are wrong");
+        }
+        System.out.printf(
+                "%-12s n=%8d   build %8.1f ms   hit %8.1f ns   miss %8.1f ns%n",
+                label, keys.size(), (built - t0) / 1e6,
+                (double) (hits - built) / keys.size(),
+                (double) (misses - hits) / keys.size());
+    }
+
+    /**
+     * Adds every key to {@code set} and looks each one up, for warm-up.
+     *
+     * @param set
+     *            the empty set to fill
+     * @param keys
+     *            the keys
+     */
+    private static void fill(Set<String> set, List<String> keys) {
+        for (String key : keys) {
+            set.add(key);
+        }
+        for (String key : keys) {
+            set.contains(key);
+        }
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        Random random = new Random(2231);
+        for (int n = 1000; n <= maxSize; n *= 10) {
+            List<String> keys = keys(n, random);
+            /*
+             * Each size is run twice and only the second run printed, so both
+             * sets are measured after the JIT has warmed up.
+             */
+            for (int round = 0; round < 2; round++) {
+                if (round == 1) {
+                    run("Set3a", new Set3a<String>(), keys);
+                    run("RadixTrieSet", new RadixTrieSet(), keys);
+                } else {
+                    fill(new Set3a<String>(), keys);
+                    fill(new RadixTrieSet(), keys);
+                }
+            }
+        }
+    }
+
+}
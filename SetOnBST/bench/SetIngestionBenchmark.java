@@ -0,0 +1,164 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares many producer threads adding to one {@code Set3a} through a shared
+ * lock (one tree descent per call, callers serialized) with the same
+ * producers going through a {@code SetIngestionPipeline}. Reports throughput
+ * and per-call latency percentiles for both.
+ *
+ * <p>
+ * Usage: {@code java SetIngestionBenchmark [producers] [addsPerProducer]
+ * [maxBatchSize]}
+ * </p>
+ *
+ * @author Shyam Sai Bethina and Yihone Chu
+ *
+ */
+public final class SetIngestionBenchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SetIngestionBenchmark() {
+    }
+
+    /**
+     * One way of adding an element, as seen by a producer.
+     */
+    private interface Adder {
+
+        /**
+         * Adds {@code x} and returns once the add is acknowledged.
+         *
+         * @param x
+         *            the element to add
+         */
+        void add(Integer x);
+
+    }
+
+    /**
+     * Runs {@code producers} threads that each add their own
+     * {@code perProducer} elements through {@code adder}, and prints the
+     * throughput and latency percentiles.
+     *
+     * @param label
+     *            the name printed for this run
+     * @param adder
+     *            how elements are added
+     * @param producers
+     *            number of producer threads
+     * @param perProducer
+     *            number of adds per producer
+     * @throws InterruptedException
+     *             if interrupted while waiting for the producers
+     */
+    private static void run(String label, Adder adder, int producers,
+            int perProducer) throws InterruptedException {
+        long[] latencies = new long[producers * perProducer];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int id = p;
+            threads[p] = new Thread(() -> {
+                /*
+                 * Each producer adds a shuffled run of its own keys, so all
+                 * keys are distinct and arrive in no particular order.
+                 */
+                Integer[] keys = new Integer[perProducer];
+                for (int k = 0; k < perProducer; k++) {
+                    keys[k] = id + k * producers;
+                }
+                Random random = new Random(id);
+                for (int k = perProducer - 1; k > 0; k--) {
+                    int j = random.nextInt(k + 1);
+                    Integer tmp = keys[k];
+                    keys[k] = keys[j];
+                    keys[j] = tmp;
+                }
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int k = 0; k < perProducer; k++) {
+                    long t0 = System.nanoTime();
+                    adder.add(keys[k]);
+                    latencies[id * perProducer + k] = System.nanoTime() - t0;
+                }
+            });
+            threads[p].start();
+        }
+
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - t0;
+
+        Arrays.sort(latencies);
+        System.out.printf(
+                "%-10s %10.0f adds/s   p50 %8.1f us   p99 %8.1f us"
+                        + "   p99.9 %8.1f us   max %8.1f us%n",
+                label, latencies.length * 1e9 / elapsed,
+                percentile(latencies, 0.50) / 1e3,
+                percentile(latencies, 0.99) / 1e3,
+                percentile(latencies, 0.999) / 1e3,
+                latencies[latencies.length - 1] / 1e3);
+    }
+
+    /**
+     * Returns the {@code q}-quantile of the sorted array {@code sorted}.
+     *
+     * @param sorted
+     *            the values, in increasing order
+     * @param q
+     *            the quantile, between 0 and 1
+     * @return the quantile
+     */
+    private static double percentile(long[] sorted, double q) {
+        int i = (int) Math.min(sorted.length - 1,
+                Math.round(q * (sorted.length - 1)));
+        return sorted[i];
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     * @throws InterruptedException
+     *             if interrupted while waiting for the producers
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int perProducer = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int maxBatchSize = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+
+        System.out.println(producers + " producers x " + perProducer
+                + " adds, max batch " + maxBatchSize);
+
+        Set3a<Integer> locked = new Set3a<Integer>();
+        Object lock = new Object();
+        run("lock", x -> {
+            synchronized (lock) {
+                locked.add(x);
+            }
+        }, producers, perProducer);
+
+        Set3a<Integer> batched = new Set3a<Integer>();
+        SetIngestionPipeline<Integer> pipeline = new SetIngestionPipeline<>(
+                batched, maxBatchSize);
+        run("pipeline", x -> pipeline.add(x).join(), producers, perProducer);
+        pipeline.close();
+
+        if (locked.size() != batched.size()) {
+            throw new AssertionError("Sets differ in size: " + locked.size()
+                    + " vs " + batched.size());
+        }
+    }
+
+}
@@ -0,0 +1,342 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a sorted array while it is small and as a
+ * {@code Set3a} once it grows, with implementations of primary methods.
+ *
+ * <p>
+ * Small sets are searched by binary search over a packed array, with no node
+ * allocations. The array starts empty and doubles as needed up to the
+ * threshold, so a set of a few elements holds only a few slots. When an add
+ * would make the set larger than the threshold, the elements move into a
+ * balanced {@code Set3a} and the array is let go. They move back to a new
+ * array only once the set shrinks below half the threshold, so a set whose
+ * size hovers around the threshold does not switch representation on every
+ * call.
+ * </p>
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @convention <pre>
+ * $this.threshold > 0  and
+ *  |$this.elements| <= $this.threshold  and
+ *  if $this.tree = null
+ *   then [$this.elements[0, $this.count) is strictly increasing]  and
+ *        $this.count <= |$this.elements|
+ *   else $this.count = 0  and  |$this.elements| = 0
+ * </pre>
+ * @correspondence <pre>
+ * this = (if $this.tree = null then [entries of $this.elements[0, $this.count)]
+ *         else $this.tree)
+ * </pre>
+ *
+ * @author Shyam Sai Bethina and Yihone Chu
+ *
+ */
+public class AdaptiveSet<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Threshold used by the no-argument constructor.
+     */
+    private static final int DEFAULT_THRESHOLD = 32;
+
+    /**
+     * Number of slots allocated for the first element.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Array with no slots, shared by every empty set and every set
+     * represented as a tree.
+     */
+    private static final Comparable<?>[] NO_ELEMENTS = new Comparable<?>[0];
+
+    /**
+     * Largest size kept in the array representation.
+     */
+    private final int threshold;
+
+    /**
+     * Elements in increasing order, while {@code tree} is {@code null}; no
+     * slots while it is not.
+     */
+    private T[] elements;
+
+    /**
+     * Number of elements in {@code elements}.
+     */
+    private int count;
+
+    /**
+     * Elements once the set has outgrown the array, otherwise {@code null}.
+     */
+    private Set3a<T> tree;
+
+    /**
+     * Returns an array of {@code capacity} slots holding the first
+     * {@code count} elements of {@code this.elements}, where
+     * {@code capacity} is at least {@code INITIAL_CAPACITY} and at least twice
+     * {@code count}, but at most {@code threshold}.
+     *
+     * @param count
+     *            the number of elements to keep
+     * @return the new array
+     */
+    @SuppressWarnings("unchecked")
+    private T[] grown(int count) {
+        int capacity = Math.min(this.threshold,
+                Math.max(INITIAL_CAPACITY, 2 * count));
+        T[] answer = (T[]) new Comparable<?>[capacity];
+        System.arraycopy(this.elements, 0, answer, 0,
+                Math.min(count, this.elements.length));
+        return answer;
+    }
+
+    /**
+     * Moves the elements from the array into a balanced tree and lets the
+     * array go.
+     */
+    @SuppressWarnings("unchecked")
+    private void promote() {
+        this.tree = new Set3a<T>();
+        List<T> sorted = Arrays.asList(this.elements).subList(0, this.count);
+        this.tree.applyBatch(sorted, Collections.<T> emptyList());
+        this.elements = (T[]) NO_ELEMENTS;
+        this.count = 0;
+    }
+
+    /**
+     * Moves the elements from the tree back into the array, if the set has
+     * shrunk below half the threshold.
+     */
+    private void demoteIfSmall() {
+        /*
+         * Compares 2 * size with the threshold rather than size with
+         * threshold / 2, which rounds to 0 for a threshold of 1.
+         */
+        if (2 * this.tree.size() < this.threshold) {
+            this.elements = this.grown(this.tree.size());
+            for (T x : this.tree) {
+                this.elements[this.count] = x;
+                this.count++;
+            }
+            this.tree = null;
+        }
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    @SuppressWarnings("unchecked")
+    private void createNewRep() {
+        /*
+         * The erasure of T is Comparable, so an array of Comparable can stand
+         * in for an array of T.
+         */
+        this.elements = (T[]) NO_ELEMENTS;
+        this.count = 0;
+        this.tree = null;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public AdaptiveSet() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Constructor with a given threshold.
+     *
+     * @param threshold
+     *            largest size kept in the array representation
+     * @requires threshold > 0
+     */
+    public AdaptiveSet(int threshold) {
+        assert threshold > 0 : "Violation of: threshold > 0";
+        this.threshold = threshold;
+        this.createNewRep();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().getConstructor(int.class)
+                    .newInstance(this.threshold);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof AdaptiveSet<?> : ""
+                + "Violation of: source is of dynamic type AdaptiveSet<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * AdaptiveSet<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        AdaptiveSet<T> localSource = (AdaptiveSet<T>) source;
+        assert localSource.threshold == this.threshold : ""
+                + "Violation of: source has the same threshold as this";
+        this.elements = localSource.elements;
+        this.count = localSource.count;
+        this.tree = localSource.tree;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert !this.contains(x) : "Violation of: x is not in this";
+
+        if (this.tree == null && this.count == this.threshold) {
+            this.promote();
+        } else if (this.tree == null && this.count == this.elements.length) {
+            this.elements = this.grown(this.count);
+        }
+        if (this.tree == null) {
+            /*
+             * binarySearch returns -(insertion point) - 1 for a missing key.
+             */
+            int at = -Arrays.binarySearch(this.elements, 0, this.count, x) - 1;
+            System.arraycopy(this.elements, at, this.elements, at + 1,
+                    this.count - at);
+            this.elements[at] = x;
+            this.count++;
+        } else {
+            this.tree.add(x);
+        }
+    }
+
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        T removed;
+        if (this.tree == null) {
+            int at = Arrays.binarySearch(this.elements, 0, this.count, x);
+            removed = this.elements[at];
+            this.count--;
+            System.arraycopy(this.elements, at + 1, this.elements, at,
+                    this.count - at);
+            this.elements[this.count] = null;
+        } else {
+            removed = this.tree.remove(x);
+            this.demoteIfSmall();
+        }
+        return removed;
+    }
+
+    @Override
+    public final T removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        T removed;
+        if (this.tree == null) {
+            /*
+             * The last element can be dropped without shifting the others.
+             */
+            this.count--;
+            removed = this.elements[this.count];
+            this.elements[this.count] = null;
+        } else {
+            removed = this.tree.removeAny();
+            this.demoteIfSmall();
+        }
+        return removed;
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        boolean answer;
+        if (this.tree == null) {
+            answer = Arrays.binarySearch(this.elements, 0, this.count, x) >= 0;
+        } else {
+            answer = this.tree.contains(x);
+        }
+        return answer;
+    }
+
+    @Override
+    public final int size() {
+        int size = this.count;
+        if (this.tree != null) {
+            size = this.tree.size();
+        }
+        return size;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        Iterator<T> answer;
+        if (this.tree == null) {
+            List<T> view = Arrays.asList(this.elements).subList(0, this.count);
+            answer = Collections.unmodifiableList(view).iterator();
+        } else {
+            answer = this.tree.iterator();
+        }
+        return answer;
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Reports the largest size {@code this} keeps in the array
+     * representation.
+     *
+     * @return the threshold
+     */
+    public final int threshold() {
+        return this.threshold;
+    }
+
+    /**
+     * Reports whether {@code this} is currently represented as a tree rather
+     * than a sorted array.
+     *
+     * @return true if {@code this} is represented as a tree
+     */
+    public final boolean isTree() {
+        return this.tree != null;
+    }
+
+}
@@ -0,0 +1,502 @@
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set<String>} represented as a compressed radix trie with
+ * implementations of primary methods. Each edge of the trie is labeled with a
+ * non-empty string, and the elements are the strings spelled along the paths
+ * from the root to the nodes marked as terminal. Searching for a string reads
+ * each of its characters at most once, however many elements share its
+ * prefix.
+ *
+ * @mathdefinitions <pre>
+ * IS_RADIX_TRIE(
+ *   n: node
+ *  ): boolean satisfies
+ *  [every child edge label of n is non-empty and the child edge labels of n
+ *   start with pairwise different characters, and every node other than the
+ *   root that is not terminal has at least two children, and n.children is
+ *   null if n has no children, and each child satisfies IS_RADIX_TRIE]
+ * WORDS(
+ *   n: node
+ *  ): finite set of string of character satisfies
+ *  [the set of strings spelled by the edge labels from n to each terminal
+ *   node below or at n]
+ * </pre>
+ * @convention <pre>
+ * IS_RADIX_TRIE($this.root)  and  $this.root.edge = <>  and
+ *  $this.size = |WORDS($this.root)|
+ * </pre>
+ * @correspondence this = WORDS($this.root)
+ *
+ * @author Shyam Sai Bethina and Yihone Chu
+ *
+ */
+public class RadixTrieSet extends SetSecondary<String> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Node of the trie.
+     */
+    private static final class Node {
+
+        /**
+         * Label of the edge from the parent to this node.
+         */
+        private String edge;
+
+        /**
+         * Whether the string spelled up to this node is an element.
+         */
+        private boolean terminal;
+
+        /**
+         * Children, keyed and ordered by the first character of their edge,
+         * or {@code null} if there are none, so that leaves carry no map.
+         */
+        private TreeMap<Character, Node> children;
+
+        /**
+         * Constructor.
+         *
+         * @param edge
+         *            the edge label
+         * @param terminal
+         *            whether the node ends an element
+         */
+        Node(String edge, boolean terminal) {
+            this.edge = edge;
+            this.terminal = terminal;
+            this.children = null;
+        }
+
+        /**
+         * Returns the child whose edge starts with {@code c}, or {@code null}
+         * if there is none.
+         *
+         * @param c
+         *            the first character of the child's edge
+         * @return the child
+         */
+        Node child(char c) {
+            Node answer = null;
+            if (this.children != null) {
+                answer = this.children.get(c);
+            }
+            return answer;
+        }
+
+        /**
+         * Adds {@code child} under the first character of its edge, replacing
+         * any child already there.
+         *
+         * @param child
+         *            the child to add
+         */
+        void putChild(Node child) {
+            if (this.children == null) {
+                this.children = new TreeMap<>();
+            }
+            this.children.put(child.edge.charAt(0), child);
+        }
+
+        /**
+         * Removes the child whose edge starts with {@code c}.
+         *
+         * @param c
+         *            the first character of the child's edge
+         */
+        void removeChild(char c) {
+            this.children.remove(c);
+            if (this.children.isEmpty()) {
+                this.children = null;
+            }
+        }
+
+        /**
+         * Reports the number of children.
+         *
+         * @return the number of children
+         */
+        int childCount() {
+            int answer = 0;
+            if (this.children != null) {
+                answer = this.children.size();
+            }
+            return answer;
+        }
+
+    }
+
+    /**
+     * Root of the trie; its edge label is empty.
+     */
+    private Node root;
+
+    /**
+     * Number of elements in {@code this}.
+     */
+    private int size;
+
+    /**
+     * Returns the length of the longest common prefix of {@code edge} and
+     * {@code x} starting at position {@code pos}.
+     *
+     * @param edge
+     *            the edge label
+     * @param x
+     *            the string
+     * @param pos
+     *            where the edge starts in {@code x}
+     * @return the number of matching characters
+     */
+    private static int matchLength(String edge, String x, int pos) {
+        int limit = Math.min(edge.length(), x.length() - pos);
+        int m = 0;
+        while (m < limit && edge.charAt(m) == x.charAt(pos + m)) {
+            m++;
+        }
+        return m;
+    }
+
+    /**
+     * Returns the node whose path spells exactly {@code x}, or {@code null} if
+     * there is none.
+     *
+     * @param x
+     *            the string
+     * @return the node spelling {@code x}
+     */
+    private Node find(String x) {
+        Node node = this.root;
+        int pos = 0;
+        while (node != null && pos < x.length()) {
+            Node child = node.child(x.charAt(pos));
+            if (child != null && x.startsWith(child.edge, pos)) {
+                pos += child.edge.length();
+                node = child;
+            } else {
+                node = null;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Merges {@code node} with its only child, unless {@code node} is the root
+     * or an element ends at it.
+     *
+     * @param node
+     *            the node
+     * @param isRoot
+     *            whether {@code node} is the root
+     */
+    private static void compress(Node node, boolean isRoot) {
+        if (!isRoot && !node.terminal && node.childCount() == 1) {
+            Node child = node.children.firstEntry().getValue();
+            node.edge = node.edge + child.edge;
+            node.terminal = child.terminal;
+            node.children = child.children;
+        }
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+        this.root = new Node("", false);
+        this.size = 0;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public RadixTrieSet() {
+        this.createNewRep();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public final Set<String> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Set<String> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof RadixTrieSet : ""
+                + "Violation of: source is of dynamic type RadixTrieSet";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case.
+         */
+        RadixTrieSet localSource = (RadixTrieSet) source;
+        this.root = localSource.root;
+        this.size = localSource.size;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(String x) {
+        assert x != null : "Violation of: x is not null";
+        assert !this.contains(x) : "Violation of: x is not in this";
+
+        Node node = this.root;
+        int pos = 0;
+        while (pos < x.length()) {
+            Node child = node.child(x.charAt(pos));
+            if (child == null) {
+                /*
+                 * Nothing shares the next character: the rest of x becomes a
+                 * new leaf.
+                 */
+                node.putChild(new Node(x.substring(pos), true));
+                pos = x.length();
+                node = null;
+            } else {
+                int m = matchLength(child.edge, x, pos);
+                if (m < child.edge.length()) {
+                    /*
+                     * x leaves the child's edge part way along it: the edge is
+                     * split at that point by a new intermediate node.
+                     */
+                    Node middle = new Node(child.edge.substring(0, m), false);
+                    child.edge = child.edge.substring(m);
+                    middle.putChild(child);
+                    node.putChild(middle);
+                    child = middle;
+                }
+                pos += m;
+                node = child;
+            }
+        }
+        if (node != null) {
+            node.terminal = true;
+        }
+        this.size++;
+    }
+
+    @Override
+    public final String remove(String x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        /*
+         * Walks down recording the path, so the nodes left redundant by the
+         * removal can be pruned or merged on the way back up.
+         */
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = this.root;
+        int pos = 0;
+        while (pos < x.length()) {
+            path.push(node);
+            node = node.child(x.charAt(pos));
+            pos += node.edge.length();
+        }
+        node.terminal = false;
+        this.size--;
+
+        if (!path.isEmpty()) {
+            Node parent = path.pop();
+            if (node.childCount() == 0) {
+                parent.removeChild(node.edge.charAt(0));
+                compress(parent, path.isEmpty());
+            } else {
+                compress(node, false);
+            }
+        }
+        return x;
+    }
+
+    @Override
+    public final String removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        /*
+         * Every leaf ends an element, so following first children from the
+         * root finds one in time proportional to its length.
+         */
+        StringBuilder x = new StringBuilder();
+        Node node = this.root;
+        while (node.childCount() > 0) {
+            node = node.children.firstEntry().getValue();
+            x.append(node.edge);
+        }
+        return this.remove(x.toString());
+    }
+
+    @Override
+    public final boolean contains(String x) {
+        assert x != null : "Violation of: x is not null";
+
+        Node node = this.find(x);
+        return node != null && node.terminal;
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<String> iterator() {
+        return new TrieIterator(this.root, "");
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Returns an iterator over the elements of {@code this} that start with
+     * {@code prefix}, in increasing order. Only the part of the trie below
+     * {@code prefix} is visited.
+     *
+     * @param prefix
+     *            the prefix
+     * @return an iterator over the elements starting with {@code prefix}
+     * @ensures <pre>
+     * [prefixIterator yields, in increasing order, exactly the elements of
+     *  this that start with prefix]
+     * </pre>
+     */
+    public final Iterator<String> prefixIterator(String prefix) {
+        assert prefix != null : "Violation of: prefix is not null";
+
+        /*
+         * Descends while prefix is not used up; prefix may end part way along
+         * the last edge, since everything below that edge still starts with
+         * prefix.
+         */
+        Node node = this.root;
+        String above = "";
+        int pos = 0;
+        while (node != null && pos < prefix.length()) {
+            Node child = node.child(prefix.charAt(pos));
+            if (child != null && matchLength(child.edge, prefix, pos) == Math
+                    .min(child.edge.length(), prefix.length() - pos)) {
+                above = prefix.substring(0, pos);
+                pos += child.edge.length();
+                node = child;
+            } else {
+                node = null;
+            }
+        }
+
+        Iterator<String> answer = Collections.emptyIterator();
+        if (node != null) {
+            answer = new TrieIterator(node, above);
+        }
+        return answer;
+    }
+
+    /**
+     * Iterator yielding, in increasing order, the elements spelled at or
+     * below a node.
+     */
+    private static final class TrieIterator implements Iterator<String> {
+
+        /**
+         * Nodes still to visit, the next one on top.
+         */
+        private final Deque<Node> pendingNodes;
+
+        /**
+         * String spelled up to each node in {@code pendingNodes}, in the same
+         * order.
+         */
+        private final Deque<String> pendingSpelled;
+
+        /**
+         * The next element, or {@code null} once there is none.
+         */
+        private String next;
+
+        /**
+         * Constructor.
+         *
+         * @param start
+         *            the node to start at
+         * @param above
+         *            the string spelled above {@code start}'s edge
+         */
+        TrieIterator(Node start, String above) {
+            this.pendingNodes = new ArrayDeque<>();
+            this.pendingSpelled = new ArrayDeque<>();
+            this.pendingNodes.push(start);
+            this.pendingSpelled.push(above + start.edge);
+            this.advance();
+        }
+
+        /**
+         * Moves {@code next} to the following element in pre-order, which for
+         * a trie with ordered children is increasing order.
+         */
+        private void advance() {
+            this.next = null;
+            while (this.next == null && !this.pendingNodes.isEmpty()) {
+                Node node = this.pendingNodes.pop();
+                String spelled = this.pendingSpelled.pop();
+                if (node.children != null) {
+                    for (Node child : node.children.descendingMap()
+                            .values()) {
+                        this.pendingNodes.push(child);
+                        this.pendingSpelled.push(spelled + child.edge);
+                    }
+                }
+                if (node.terminal) {
+                    this.next = spelled;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public String next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            String answer = this.next;
+            this.advance();
+            return answer;
+        }
+
+    }
+
+}
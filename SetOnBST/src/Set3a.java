@@ -1,4 +1,10 @@
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 import components.binarytree.BinaryTree;
 import components.binarytree.BinaryTree1;
@@ -36,6 +42,39 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
      */
     private BinaryTree<T> tree;
 
+    /**
+     * Log of the mutations of {@code this}, or {@code null} if mutations are
+     * not being logged.
+     */
+    private SetChangeLog<T> changeLog;
+
+    /**
+     * Sampled number of successful {@code contains} calls per element, or
+     * {@code null} if accesses are not being sampled.
+     */
+    private Map<T, Long> accessCounts;
+
+    /**
+     * Every how many {@code contains} calls one is sampled.
+     */
+    private int samplePeriod;
+
+    /**
+     * Number of {@code contains} calls left until the next sample.
+     */
+    private int untilNextSample;
+
+    /**
+     * Number of samples after which a rebuild is reported as due, or 0 for
+     * never.
+     */
+    private long rebuildThreshold;
+
+    /**
+     * Number of samples taken since the last rebuild.
+     */
+    private long samplesSinceRebuild;
+
     /**
      * Returns whether {@code x} is in {@code t}.
      *
@@ -268,22 +307,462 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
                  * recursively remove the value from the right hand tree.
                  */
                 removed = removeFromTree(rhs, x);
+                /*
+                 * Reassembles the tree without the removed value.
+                 */
+                t.assemble(root, lhs, rhs);
             } else {
                 /*
                  * If the removed value is less than the root, then we
-                 * recursively remove the value from the right hand tree.
+                 * recursively remove the value from the left hand tree.
                  */
                 removed = removeFromTree(lhs, x);
+                /*
+                 * Reassembles the tree without the removed value.
+                 */
+                t.assemble(root, lhs, rhs);
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Makes {@code x} a label of {@code t} if {@code present}, or not a label
+     * of {@code t} otherwise, and reports whether it was one before. Finds out
+     * and makes the change in the same descent.
+     *
+     * @param <T>
+     *            type of {@code BinaryTree} labels
+     * @param t
+     *            the {@code BinaryTree} to update
+     * @param x
+     *            the label to add or remove
+     * @param present
+     *            whether {@code x} should be a label of {@code t} afterwards
+     * @return true if {@code x} was a label of {@code #t}
+     * @aliases reference {@code x}
+     * @updates t
+     * @requires IS_BST(t)
+     * @ensures <pre>
+     * IS_BST(t)  and  updateInTree = (x is in labels(#t))  and
+     *  if present
+     *   then labels(t) = labels(#t) union {x}
+     *   else labels(t) = labels(#t) \ {x}
+     * </pre>
+     */
+    private static <T extends Comparable<T>> boolean updateInTree(
+            BinaryTree<T> t, T x, boolean present) {
+        assert t != null : "Violation of: t is not null";
+        assert x != null : "Violation of: x is not null";
+
+        boolean answer = false;
+        if (t.size() > 0) {
+            BinaryTree<T> lhs = t.newInstance();
+            BinaryTree<T> rhs = t.newInstance();
+            T root = t.disassemble(lhs, rhs);
+
+            int c = x.compareTo(root);
+            if (c == 0) {
+                answer = true;
+                if (present) {
+                    t.assemble(root, lhs, rhs);
+                } else if (rhs.size() != 0) {
+                    /*
+                     * Same as removing the root in removeFromTree.
+                     */
+                    t.assemble(removeSmallest(rhs), lhs, rhs);
+                } else {
+                    t.transferFrom(lhs);
+                }
+            } else {
+                if (c > 0) {
+                    answer = updateInTree(rhs, x, present);
+                } else {
+                    answer = updateInTree(lhs, x, present);
+                }
+                t.assemble(root, lhs, rhs);
             }
+        } else if (present) {
+            t.assemble(x, t.newInstance(), t.newInstance());
+        }
+        return answer;
+    }
+
+    /**
+     * Splits {@code t} at {@code x}, leaving the labels less than {@code x} in
+     * {@code t} and moving the labels greater than or equal to {@code x} to
+     * {@code geq}. Only the nodes on one root-to-leaf path are touched.
+     *
+     * @param <T>
+     *            type of {@code BinaryTree} labels
+     * @param t
+     *            the {@code BinaryTree} to split
+     * @param x
+     *            the split point
+     * @param geq
+     *            the {@code BinaryTree} receiving the labels >= x
+     * @updates t, geq
+     * @requires IS_BST(t) and |geq| = 0
+     * @ensures <pre>
+     * IS_BST(t)  and  IS_BST(geq)  and
+     *  labels(t) = {y: T where (y is in labels(#t) and y < x) (y)}  and
+     *  labels(geq) = {y: T where (y is in labels(#t) and y >= x) (y)}
+     * </pre>
+     */
+    private static <T extends Comparable<T>> void splitTree(BinaryTree<T> t,
+            T x, BinaryTree<T> geq) {
+        assert t != null : "Violation of: t is not null";
+        assert x != null : "Violation of: x is not null";
+        assert geq != null : "Violation of: geq is not null";
+        assert geq.size() == 0 : "Violation of: |geq| = 0";
+
+        if (t.size() > 0) {
+            BinaryTree<T> lhs = t.newInstance();
+            BinaryTree<T> rhs = t.newInstance();
+
+            T root = t.disassemble(lhs, rhs);
+
+            if (root.compareTo(x) < 0) {
+                /*
+                 * The root and its whole left tree stay; only the right tree
+                 * can straddle x, so it is split and its upper part is the
+                 * answer.
+                 */
+                splitTree(rhs, x, geq);
+                t.assemble(root, lhs, rhs);
+            } else {
+                /*
+                 * The root and its whole right tree move; only the left tree
+                 * can straddle x, so its lower part is what stays in t and its
+                 * upper part becomes the left tree of the moved root.
+                 */
+                BinaryTree<T> geqLeft = t.newInstance();
+                splitTree(lhs, x, geqLeft);
+                geq.assemble(root, geqLeft, rhs);
+                t.transferFrom(lhs);
+            }
+        }
+    }
+
+    /**
+     * Joins {@code u} onto {@code t}, where every label of {@code t} is less
+     * than every label of {@code u}. The smallest label of {@code u} becomes
+     * the new root, so only the left spine of {@code u} is touched.
+     *
+     * @param <T>
+     *            type of {@code BinaryTree} labels
+     * @param t
+     *            the {@code BinaryTree} holding the smaller labels
+     * @param u
+     *            the {@code BinaryTree} holding the larger labels
+     * @updates t
+     * @clears u
+     * @requires <pre>
+     * IS_BST(t)  and  IS_BST(u)  and
+     *  [every label in t is less than every label in u]
+     * </pre>
+     * @ensures IS_BST(t) and labels(t) = labels(#t) union labels(#u)
+     */
+    private static <T> void joinTrees(BinaryTree<T> t, BinaryTree<T> u) {
+        assert t != null : "Violation of: t is not null";
+        assert u != null : "Violation of: u is not null";
+        assert t != u : "Violation of: t is not u";
+
+        if (t.size() == 0) {
+            t.transferFrom(u);
+        } else if (u.size() > 0) {
+            BinaryTree<T> lhs = t.newInstance();
+            lhs.transferFrom(t);
+            T root = removeSmallest(u);
+            t.assemble(root, lhs, u);
+        }
+    }
+
+    /**
+     * Returns the largest label of {@code t} if {@code largest}, or the
+     * smallest otherwise. Only one spine of {@code t} is visited.
+     *
+     * @param <T>
+     *            type of {@code BinaryTree} labels
+     * @param t
+     *            the {@code BinaryTree} to look in
+     * @param largest
+     *            whether to look for the largest label
+     * @return the smallest or largest label in {@code t}
+     * @requires IS_BST(t) and |t| > 0
+     * @ensures <pre>
+     * if largest
+     *  then extremeInTree = [the largest label in t]
+     *  else extremeInTree = [the smallest label in t]
+     * </pre>
+     */
+    private static <T> T extremeInTree(BinaryTree<T> t, boolean largest) {
+        assert t != null : "Violation of: t is not null";
+        assert t.size() > 0 : "Violation of: |t| > 0";
+
+        BinaryTree<T> lhs = t.newInstance();
+        BinaryTree<T> rhs = t.newInstance();
+        T root = t.disassemble(lhs, rhs);
+
+        T answer = root;
+        if (largest && rhs.size() > 0) {
+            answer = extremeInTree(rhs, true);
+        } else if (!largest && lhs.size() > 0) {
+            answer = extremeInTree(lhs, false);
+        }
+
+        /*
+         * Reassembles the original tree to preserve it.
+         */
+        t.assemble(root, lhs, rhs);
+        return answer;
+    }
+
+    /**
+     * Reports whether every label of {@code t} is less than every label of
+     * {@code u}, comparing only the largest label of {@code t} with the
+     * smallest label of {@code u}.
+     *
+     * @param <T>
+     *            type of {@code BinaryTree} labels
+     * @param t
+     *            the {@code BinaryTree} expected to hold the smaller labels
+     * @param u
+     *            the {@code BinaryTree} expected to hold the larger labels
+     * @return true if every label of t is less than every label of u
+     * @requires IS_BST(t) and IS_BST(u)
+     * @ensures <pre>
+     * isBefore = [every label in t is less than every label in u]
+     * </pre>
+     */
+    private static <T extends Comparable<T>> boolean isBefore(BinaryTree<T> t,
+            BinaryTree<T> u) {
+        return t.size() == 0 || u.size() == 0 || extremeInTree(t, true)
+                .compareTo(extremeInTree(u, false)) < 0;
+    }
+
+    /**
+     * Builds in {@code t} a binary search tree of {@code labels[lo, hi)} that
+     * approximately minimizes the weighted search cost, by rooting every
+     * subtree at the label that best splits the weight of its range in half
+     * (Mehlhorn's bisection rule).
+     *
+     * @param <T>
+     *            type of {@code BinaryTree} labels
+     * @param labels
+     *            the labels, in increasing order
+     * @param prefix
+     *            prefix sums of the label weights: {@code prefix[i]} is the
+     *            total weight of {@code labels[0, i)}
+     * @param lo
+     *            the start of the range, inclusive
+     * @param hi
+     *            the end of the range, exclusive
+     * @param t
+     *            the {@code BinaryTree} to build
+     * @replaces t
+     * @requires <pre>
+     * [labels is strictly increasing]  and  |prefix| = |labels| + 1  and
+     *  [prefix is non-decreasing]  and  0 <= lo <= hi <= |labels|
+     * </pre>
+     * @ensures IS_BST(t) and labels(t) = [entries of labels[lo, hi)]
+     */
+    private static <T> void buildWeightedTree(List<T> labels, long[] prefix,
+            int lo, int hi, BinaryTree<T> t) {
+        if (lo == hi) {
+            t.clear();
+        } else {
             /*
-             *
-             * Reassembles the tree without the removed value.
+             * Binary search for the label whose weight straddles the middle of
+             * the range's weight; the label before it may split the weight
+             * more evenly, so the better of the two is the root.
              */
+            long twiceMiddle = prefix[lo] + prefix[hi];
+            int a = lo;
+            int b = hi - 1;
+            while (a < b) {
+                int mid = (a + b) >>> 1;
+                if (2 * prefix[mid + 1] <= twiceMiddle) {
+                    a = mid + 1;
+                } else {
+                    b = mid;
+                }
+            }
+            int root = a;
+            if (root > lo) {
+                long imbalance = Math.abs((prefix[root] - prefix[lo])
+                        - (prefix[hi] - prefix[root + 1]));
+                long imbalanceBefore = Math.abs((prefix[root - 1] - prefix[lo])
+                        - (prefix[hi] - prefix[root]));
+                if (imbalanceBefore < imbalance) {
+                    root--;
+                }
+            }
+
+            BinaryTree<T> lhs = t.newInstance();
+            BinaryTree<T> rhs = t.newInstance();
+            buildWeightedTree(labels, prefix, lo, root, lhs);
+            buildWeightedTree(labels, prefix, root + 1, hi, rhs);
+            t.assemble(labels.get(root), lhs, rhs);
+        }
+    }
 
+    /**
+     * Returns the sum over the labels of {@code t} of the label's weight times
+     * the number of labels a search for it visits, given that a search
+     * reaching the root of {@code t} has visited {@code depth} labels there.
+     *
+     * @param <T>
+     *            type of {@code BinaryTree} labels
+     * @param t
+     *            the {@code BinaryTree}
+     * @param counts
+     *            access counts; each label's weight is its count plus one
+     * @param depth
+     *            the number of labels visited once the root of {@code t} is
+     *            reached
+     * @return the weighted sum of search path lengths
+     */
+    private static <T> long weightedPathLength(BinaryTree<T> t,
+            Map<T, Long> counts, int depth) {
+        long total = 0;
+        if (t.size() > 0) {
+            BinaryTree<T> lhs = t.newInstance();
+            BinaryTree<T> rhs = t.newInstance();
+
+            T root = t.disassemble(lhs, rhs);
+            total = weight(counts, root) * depth
+                    + weightedPathLength(lhs, counts, depth + 1)
+                    + weightedPathLength(rhs, counts, depth + 1);
             t.assemble(root, lhs, rhs);
         }
+        return total;
+    }
 
-        return removed;
+    /**
+     * Returns the weight of {@code x}: its access count plus one, so that
+     * elements never sampled still count.
+     *
+     * @param <T>
+     *            type of the elements
+     * @param counts
+     *            access counts, or {@code null} for uniform weights
+     * @param x
+     *            the element
+     * @return the weight of {@code x}
+     */
+    private static <T> long weight(Map<T, Long> counts, T x) {
+        long w = 1;
+        if (counts != null) {
+            w += counts.getOrDefault(x, 0L);
+        }
+        return w;
+    }
+
+    /**
+     * Removes and returns a label of {@code t} that can be removed without
+     * searching: the root if one of its subtrees is empty, otherwise such a
+     * label found by always descending into the smaller subtree. Since the
+     * subtree entered is at most half of what is left, at most log2(|t|)
+     * levels are visited, and none when the root has an empty subtree.
+     *
+     * <p>
+     * This is O(log n) per call on a balanced tree, not O(1) amortized. O(1)
+     * amortized is reachable by right-rotating at the root until its left
+     * subtree is empty and then dropping the root: each rotation moves one
+     * label onto the right spine for good. But that leaves the tree as a chain
+     * for every lookup made between removals, so this method keeps the
+     * tree's shape and pays the O(log n) descent instead. {@code drainTo} is
+     * the way to take out every label in O(n) total.
+     * </p>
+     *
+     * @param <T>
+     *            type of {@code BinaryTree} labels
+     * @param t
+     *            the {@code BinaryTree} from which to remove a label
+     * @return the removed label
+     * @updates t
+     * @requires IS_BST(t) and |t| > 0
+     * @ensures <pre>
+     * IS_BST(t)  and  removeNearRoot is in labels(#t)  and
+     *  labels(t) = labels(#t) \ {removeNearRoot}
+     * </pre>
+     */
+    private static <T> T removeNearRoot(BinaryTree<T> t) {
+        assert t != null : "Violation of: t is not null";
+        assert t.size() > 0 : "Violation of: |t| > 0";
+
+        BinaryTree<T> lhs = t.newInstance();
+        BinaryTree<T> rhs = t.newInstance();
+
+        T root = t.disassemble(lhs, rhs);
+
+        T answer = root;
+        if (lhs.size() == 0) {
+            /*
+             * The root has no left tree, so its right tree takes its place.
+             */
+            t.transferFrom(rhs);
+        } else if (rhs.size() == 0) {
+            /*
+             * The root has no right tree, so its left tree takes its place.
+             */
+            t.transferFrom(lhs);
+        } else {
+            if (lhs.size() <= rhs.size()) {
+                answer = removeNearRoot(lhs);
+            } else {
+                answer = removeNearRoot(rhs);
+            }
+            t.assemble(root, lhs, rhs);
+        }
+        return answer;
+    }
+
+    /**
+     * Passes every label of {@code t} to {@code action} in increasing order,
+     * taking {@code t} apart as it goes instead of reassembling it. If
+     * {@code action} throws, the labels not yet passed to it are put back
+     * together in {@code t} before the exception propagates.
+     *
+     * @param <T>
+     *            type of {@code BinaryTree} labels
+     * @param t
+     *            the {@code BinaryTree} to drain
+     * @param action
+     *            what to do with each label
+     * @clears t
+     * @requires IS_BST(t)
+     * @ensures [action has been applied to every label of #t, in increasing
+     *          order]
+     */
+    private static <T> void drainTree(BinaryTree<T> t,
+            Consumer<? super T> action) {
+        if (t.size() > 0) {
+            BinaryTree<T> lhs = t.newInstance();
+            BinaryTree<T> rhs = t.newInstance();
+
+            T root = t.disassemble(lhs, rhs);
+            boolean rootPassed = false;
+            try {
+                drainTree(lhs, action);
+                action.accept(root);
+                rootPassed = true;
+                drainTree(rhs, action);
+            } catch (RuntimeException | Error e) {
+                /*
+                 * Whatever is left of lhs and rhs is still a BST, and every
+                 * label in it is not yet passed.
+                 */
+                if (rootPassed) {
+                    t.transferFrom(rhs);
+                } else {
+                    t.assemble(root, lhs, rhs);
+                }
+                throw e;
+            }
+        }
     }
 
     /**
@@ -292,10 +771,67 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
     private void createNewRep() {
 
         /*
-         * Creates a representation which is a binary tree.
+         * Creates a representation which is a binary tree, of the same kind as
+         * the current one if there is one.
          */
-        this.tree = new BinaryTree1<T>();
+        if (this.tree == null) {
+            this.tree = new BinaryTree1<T>();
+        } else {
+            this.tree = this.tree.newInstance();
+        }
+
+    }
+
+    /**
+     * Records that {@code x} was added: appends it to the change log, if there
+     * is one.
+     *
+     * @param x
+     *            the added element
+     */
+    private void recordAdd(T x) {
+        if (this.changeLog != null) {
+            this.changeLog.recordAdd(x);
+        }
+    }
+
+    /**
+     * Records that {@code x} was removed: appends it to the change log, if
+     * there is one, and drops its access count, if accesses are sampled.
+     *
+     * @param x
+     *            the removed element
+     */
+    private void recordRemove(T x) {
+        if (this.changeLog != null) {
+            this.changeLog.recordRemove(x);
+        }
+        if (this.accessCounts != null) {
+            this.accessCounts.remove(x);
+        }
+    }
 
+    /**
+     * Records that {@code this} was emptied: appends a clear to the change
+     * log, if there is one, and drops all access counts, if accesses are
+     * sampled.
+     */
+    private void recordClear() {
+        if (this.changeLog != null) {
+            this.changeLog.recordClear();
+        }
+        if (this.accessCounts != null) {
+            this.accessCounts.clear();
+        }
+    }
+
+    /**
+     * Reports whether mutations need to be recorded element by element.
+     *
+     * @return true if there is a change log or accesses are sampled
+     */
+    private boolean isRecording() {
+        return this.changeLog != null || this.accessCounts != null;
     }
 
     /*
@@ -311,6 +847,23 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
 
     }
 
+    /**
+     * Constructor using {@code emptyTree}, and trees of its dynamic type, for
+     * the representation. Lets the test fixtures substitute instrumented
+     * trees.
+     *
+     * @param emptyTree
+     *            the tree to start from
+     * @requires |emptyTree| = 0
+     */
+    Set3a(BinaryTree<T> emptyTree) {
+        assert emptyTree != null : "Violation of: emptyTree is not null";
+        assert emptyTree.size() == 0 : "Violation of: |emptyTree| = 0";
+
+        this.tree = emptyTree;
+
+    }
+
     /*
      * Standard methods -------------------------------------------------------
      */
@@ -329,6 +882,7 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
     @Override
     public final void clear() {
         this.createNewRep();
+        this.recordClear();
     }
 
     @Override
@@ -345,6 +899,51 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
         Set3a<T> localSource = (Set3a<T>) source;
         this.tree = localSource.tree;
         localSource.createNewRep();
+
+        /*
+         * Replicas of either set only ever see kernel-level changes, so the
+         * wholesale replacement is logged as a clear followed by adds.
+         */
+        localSource.recordClear();
+        if (this.isRecording()) {
+            this.recordClear();
+            for (T x : this.tree) {
+                this.recordAdd(x);
+            }
+        }
+    }
+
+    /**
+     * Overridden so that comparing sets never goes through the public
+     * {@code contains} of either set, which would count as sampled accesses.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public final boolean equals(Object obj) {
+        boolean answer = obj == this;
+        if (!answer && obj instanceof Set<?>) {
+            Set<?> s = (Set<?>) obj;
+            answer = s.size() == this.tree.size();
+            Iterator<?> it = s.iterator();
+            try {
+                while (answer && it.hasNext()) {
+                    Object x = it.next();
+                    /*
+                     * Elements of another type make compareTo throw, which
+                     * means the sets differ.
+                     */
+                    answer = x != null && isInTree(this.tree, (T) x);
+                }
+            } catch (ClassCastException e) {
+                answer = false;
+            }
+        }
+        return answer;
+    }
+
+    @Override
+    public final int hashCode() {
+        return super.hashCode();
     }
 
     /*
@@ -354,25 +953,28 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
     @Override
     public final void add(T x) {
         assert x != null : "Violation of: x is not null";
-        assert !this.contains(x) : "Violation of: x is not in this";
+        assert !isInTree(this.tree, x) : "Violation of: x is not in this";
 
         /*
          * Uses insertInTree to insert x into the right spot in the binary tree.
          */
         insertInTree(this.tree, x);
+        this.recordAdd(x);
 
     }
 
     @Override
     public final T remove(T x) {
         assert x != null : "Violation of: x is not null";
-        assert this.contains(x) : "Violation of: x is in this";
+        assert isInTree(this.tree, x) : "Violation of: x is in this";
 
         /*
          * Removes x from the tree using removeFromTree and returning the
          * removed value.
          */
-        return removeFromTree(this.tree, x);
+        T removed = removeFromTree(this.tree, x);
+        this.recordRemove(removed);
+        return removed;
     }
 
     @Override
@@ -380,9 +982,13 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
         assert this.size() > 0 : "Violation of: this /= empty_set";
 
         /*
-         * Removes and returns the smallest value from the tree.
+         * Removes and returns whichever value is cheapest to take out of the
+         * tree. The log gets the element actually removed so replicas remove
+         * the same one.
          */
-        return removeSmallest(this.tree);
+        T removed = removeNearRoot(this.tree);
+        this.recordRemove(removed);
+        return removed;
     }
 
     @Override
@@ -393,7 +999,11 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
          * Returns the boolean value returned when calling isInTree with the
          * tree variable and x.
          */
-        return isInTree(this.tree, x);
+        boolean answer = isInTree(this.tree, x);
+        if (answer && this.accessCounts != null) {
+            this.sampleAccess(x);
+        }
+        return answer;
     }
 
     @Override
@@ -412,4 +1022,543 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
         return this.tree.iterator();
     }
 
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Starts logging every mutation of {@code this} to {@code log}, or stops
+     * logging if {@code log} is {@code null}.
+     *
+     * @param log
+     *            the change log to append to, or {@code null}
+     * @aliases reference {@code log}
+     * @updates this
+     * @ensures [subsequent mutations of this are appended to log]
+     */
+    public final void setChangeLog(SetChangeLog<T> log) {
+        this.changeLog = log;
+    }
+
+    /**
+     * Returns the change log mutations of {@code this} are appended to, or
+     * {@code null} if they are not being logged.
+     *
+     * @return the change log
+     * @aliases reference returned
+     */
+    public final SetChangeLog<T> changeLog() {
+        return this.changeLog;
+    }
+
+    /**
+     * Removes from {@code this} every element greater than or equal to
+     * {@code x} and returns them as a new set.
+     *
+     * @param x
+     *            the split point
+     * @return the elements of {@code #this} greater than or equal to {@code x}
+     * @updates this
+     * @ensures <pre>
+     * this = {y: T where (y is in #this and y < x) (y)}  and
+     *  split = {y: T where (y is in #this and y >= x) (y)}
+     * </pre>
+     */
+    public final Set3a<T> split(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        /*
+         * The cast cannot fail: newInstance constructs an object of the same
+         * dynamic type as this.
+         */
+        Set3a<T> upper = (Set3a<T>) this.newInstance();
+        upper.tree = this.tree.newInstance();
+        splitTree(this.tree, x, upper.tree);
+        if (this.isRecording()) {
+            for (T y : upper.tree) {
+                this.recordRemove(y);
+            }
+        }
+        return upper;
+    }
+
+    /**
+     * Moves every element of {@code s} into {@code this}, where the elements
+     * of {@code s} are either all less than or all greater than the elements
+     * of {@code this}.
+     *
+     * @param s
+     *            the set to join onto {@code this}
+     * @updates this
+     * @clears s
+     * @requires <pre>
+     * s /= this  and
+     *  ([every element of this is less than every element of s]  or
+     *   [every element of s is less than every element of this])
+     * </pre>
+     * @ensures this = #this union #s
+     */
+    public final void join(Set3a<T> s) {
+        assert s != null : "Violation of: s is not null";
+        assert s != this : "Violation of: s is not this";
+        assert isBefore(this.tree, s.tree) || isBefore(s.tree, this.tree) : ""
+                + "Violation of: every element of this is less than every"
+                + " element of s or every element of s is less than every"
+                + " element of this";
+
+        if (this.changeLog != null) {
+            for (T y : s.tree) {
+                this.recordAdd(y);
+            }
+        }
+
+        /*
+         * Since the sets are ordered with respect to each other, comparing
+         * the roots tells which one holds the larger elements.
+         */
+        if (this.tree.size() > 0 && s.tree.size() > 0
+                && s.tree.root().compareTo(this.tree.root()) < 0) {
+            joinTrees(s.tree, this.tree);
+            this.tree.transferFrom(s.tree);
+        } else {
+            joinTrees(this.tree, s.tree);
+        }
+        s.createNewRep();
+        s.recordClear();
+    }
+
+    /**
+     * Removes from {@code this} every element in the range from {@code lo}
+     * (inclusive) to {@code hi} (exclusive) and returns them as a new set.
+     * The range is cut out with two splits and one join rather than one
+     * removal per element.
+     *
+     * @param lo
+     *            the lower bound of the range, inclusive
+     * @param hi
+     *            the upper bound of the range, exclusive
+     * @return the removed elements
+     * @updates this
+     * @requires lo <= hi
+     * @ensures <pre>
+     * removeRange = {y: T where (y is in #this and lo <= y < hi) (y)}  and
+     *  this = #this \ removeRange
+     * </pre>
+     */
+    public final Set3a<T> removeRange(T lo, T hi) {
+        assert lo != null : "Violation of: lo is not null";
+        assert hi != null : "Violation of: hi is not null";
+        assert lo.compareTo(hi) <= 0 : "Violation of: lo <= hi";
+
+        Set3a<T> removed = (Set3a<T>) this.newInstance();
+        removed.tree = this.tree.newInstance();
+        BinaryTree<T> upper = this.tree.newInstance();
+        splitTree(this.tree, lo, removed.tree);
+        splitTree(removed.tree, hi, upper);
+        joinTrees(this.tree, upper);
+        if (this.isRecording()) {
+            for (T y : removed.tree) {
+                this.recordRemove(y);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Counts a successful {@code contains(x)} if it is due to be sampled. Only
+     * the public {@code contains} samples; the precondition checks and
+     * {@code equals} look elements up with {@code isInTree} directly, so the
+     * counts are the same with and without assertions enabled.
+     *
+     * @param x
+     *            the element found
+     */
+    private void sampleAccess(T x) {
+        this.untilNextSample--;
+        if (this.untilNextSample == 0) {
+            this.untilNextSample = this.samplePeriod;
+            this.accessCounts.merge(x, 1L, Long::sum);
+            this.samplesSinceRebuild++;
+        }
+    }
+
+    /**
+     * Starts sampling the successful {@code contains} calls on {@code this},
+     * counting one call out of every {@code samplePeriod}. Once
+     * {@code rebuildThreshold} samples have been taken since the last
+     * rebuild, {@code isRebuildDue} reports it; the rebuild itself is never
+     * run inside {@code contains}, so no lookup pays for it, and is left to
+     * the client to schedule. A threshold of 0 never reports a rebuild due.
+     *
+     * @param samplePeriod
+     *            every how many successful {@code contains} calls one is
+     *            counted
+     * @param rebuildThreshold
+     *            number of samples after which a rebuild is due, or 0
+     * @updates this
+     * @requires samplePeriod > 0 and rebuildThreshold >= 0
+     * @ensures [contains calls on this are sampled, all counts start at 0]
+     */
+    public final void enableAccessSampling(int samplePeriod,
+            long rebuildThreshold) {
+        assert samplePeriod > 0 : "Violation of: samplePeriod > 0";
+        assert rebuildThreshold >= 0 : "Violation of: rebuildThreshold >= 0";
+
+        this.accessCounts = new TreeMap<>();
+        this.samplePeriod = samplePeriod;
+        this.untilNextSample = samplePeriod;
+        this.rebuildThreshold = rebuildThreshold;
+        this.samplesSinceRebuild = 0;
+    }
+
+    /**
+     * Reports whether enough accesses have been sampled since the last rebuild
+     * that {@code rebuildByAccessFrequency} should be called.
+     *
+     * @return true if a rebuild is due
+     */
+    public final boolean isRebuildDue() {
+        return this.accessCounts != null && this.rebuildThreshold > 0
+                && this.samplesSinceRebuild >= this.rebuildThreshold;
+    }
+
+    /**
+     * Stops sampling {@code contains} calls and discards the counts.
+     *
+     * @updates this
+     * @ensures [contains calls on this are not sampled]
+     */
+    public final void disableAccessSampling() {
+        this.accessCounts = null;
+    }
+
+    /**
+     * Reports the expected number of elements a successful search visits in
+     * the current tree, weighting every element by its sampled access count
+     * plus one (uniformly if accesses are not sampled).
+     *
+     * @return the expected number of elements visited per successful search
+     * @ensures <pre>
+     * expectedComparisons = [sum over x in this of weight(x) * depth(x)] /
+     *                       [sum over x in this of weight(x)]
+     * </pre>
+     */
+    public final double expectedComparisons() {
+        double answer = 0;
+        if (this.tree.size() > 0) {
+            long totalWeight = 0;
+            for (T x : this.tree) {
+                totalWeight += weight(this.accessCounts, x);
+            }
+            answer = (double) weightedPathLength(this.tree, this.accessCounts,
+                    1) / totalWeight;
+        }
+        return answer;
+    }
+
+    /**
+     * Rebuilds the tree so that frequently accessed elements sit near the
+     * root, using the sampled access counts (a balanced tree if accesses are
+     * not sampled). Runs in O(n log n) time for a set of n elements; compare
+     * {@code expectedComparisons} before and after to see the gain. If a
+     * rebuild threshold is set, the counts are then halved, so that periodic
+     * rebuilds follow a drifting distribution instead of being anchored to old
+     * samples.
+     *
+     * @return the expected number of elements visited per successful search
+     *         in the rebuilt tree
+     * @updates this
+     * @ensures <pre>
+     * this = #this  and
+     *  rebuildByAccessFrequency = [expectedComparisons() before any halving
+     *   of the counts]
+     * </pre>
+     */
+    public final double rebuildByAccessFrequency() {
+        List<T> labels = new ArrayList<>(this.tree.size());
+        for (T x : this.tree) {
+            labels.add(x);
+        }
+        long[] prefix = new long[labels.size() + 1];
+        for (int i = 0; i < labels.size(); i++) {
+            prefix[i + 1] = prefix[i]
+                    + weight(this.accessCounts, labels.get(i));
+        }
+
+        BinaryTree<T> rebuilt = this.tree.newInstance();
+        buildWeightedTree(labels, prefix, 0, labels.size(), rebuilt);
+        this.tree = rebuilt;
+        this.samplesSinceRebuild = 0;
+        double after = this.expectedComparisons();
+        if (this.accessCounts != null && this.rebuildThreshold > 0) {
+            this.accessCounts.replaceAll((y, count) -> count / 2);
+            this.accessCounts.values().removeIf(count -> count == 0);
+        }
+        return after;
+    }
+
+    /**
+     * Adds every element of {@code additions} to {@code this} and removes
+     * every element of {@code removals} from it in one pass, as
+     * {@code applyUpdates} does.
+     *
+     * @param additions
+     *            the elements to add, in increasing order
+     * @param removals
+     *            the elements to remove, in increasing order
+     * @updates this
+     * @requires <pre>
+     * [additions and removals are strictly increasing]  and
+     *  [no entry of additions is in this]  and
+     *  [every entry of removals is in this]
+     * </pre>
+     * @ensures <pre>
+     * this = (#this union [entries of additions]) \ [entries of removals]
+     * </pre>
+     */
+    public final void applyBatch(List<T> additions, List<T> removals) {
+        assert additions != null : "Violation of: additions is not null";
+        assert removals != null : "Violation of: removals is not null";
+
+        /*
+         * Merges the two lists into one list of keys; an element in both
+         * would violate one of the preconditions, so the merge sends it to
+         * the removals and the check below catches it.
+         */
+        int k = additions.size() + removals.size();
+        List<T> keys = new ArrayList<>(k);
+        List<Update> updates = new ArrayList<>(k);
+        int a = 0;
+        int r = 0;
+        while (a < additions.size() || r < removals.size()) {
+            if (r == removals.size() || (a < additions.size()
+                    && additions.get(a).compareTo(removals.get(r)) < 0)) {
+                keys.add(additions.get(a));
+                updates.add(Update.ADD);
+                a++;
+            } else {
+                keys.add(removals.get(r));
+                updates.add(Update.REMOVE);
+                r++;
+            }
+        }
+
+        boolean[] wasPresent = this.applyUpdates(keys, updates);
+        for (int i = 0; i < k; i++) {
+            assert wasPresent[i] == (updates.get(i) == Update.REMOVE) : ""
+                    + "Violation of: no entry of additions is in this and"
+                    + " every entry of removals is in this";
+        }
+    }
+
+    /**
+     * What {@code applyUpdates} does with one key.
+     */
+    public enum Update {
+        /**
+         * Add the key if it is not in the set.
+         */
+        ADD,
+        /**
+         * Remove the key if it is in the set.
+         */
+        REMOVE,
+        /**
+         * Only report whether the key is in the set.
+         */
+        LOOKUP
+    }
+
+    /**
+     * Applies {@code updates.get(i)} to {@code keys.get(i)} for every i, and
+     * reports which keys were in {@code this} beforehand. Whether each key is
+     * present is found out by the same pass that adds or removes it: small
+     * batches take one descent per key, and once the batch is large enough
+     * that one descent per key would cost more than a linear pass, the tree is
+     * instead merged with the keys in order and rebuilt balanced.
+     *
+     * @param keys
+     *            the keys, in increasing order
+     * @param updates
+     *            what to do with each key
+     * @return whether each key was in {@code #this}
+     * @updates this
+     * @requires <pre>
+     * [keys is strictly increasing]  and  |keys| = |updates|
+     * </pre>
+     * @ensures <pre>
+     * this = (#this union [entries of keys whose update is ADD]) \
+     *   [entries of keys whose update is REMOVE]  and
+     *  [applyUpdates[i] = (keys[i] is in #this), for every i]
+     * </pre>
+     */
+    public final boolean[] applyUpdates(List<T> keys, List<Update> updates) {
+        assert keys != null : "Violation of: keys is not null";
+        assert updates != null : "Violation of: updates is not null";
+        assert keys.size() == updates.size() : ""
+                + "Violation of: |keys| = |updates|";
+
+        int n = this.tree.size();
+        int k = keys.size();
+        boolean[] wasPresent = new boolean[k];
+        int log = 32 - Integer.numberOfLeadingZeros(n);
+        if ((long) k * log < n) {
+            for (int i = 0; i < k; i++) {
+                T x = keys.get(i);
+                Update update = updates.get(i);
+                if (update == Update.LOOKUP) {
+                    wasPresent[i] = isInTree(this.tree, x);
+                } else {
+                    wasPresent[i] = updateInTree(this.tree, x,
+                            update == Update.ADD);
+                }
+            }
+        } else {
+            /*
+             * Merge of the current elements (in order from the tree's
+             * iterator) with the keys: a key equal to the current element is
+             * present, and a key passed over is absent.
+             */
+            List<T> merged = new ArrayList<>(n + k);
+            boolean changed = false;
+            Iterator<T> current = this.tree.iterator();
+            int i = 0;
+            while (current.hasNext()) {
+                T x = current.next();
+                int c = -1;
+                while (i < k && (c = keys.get(i).compareTo(x)) < 0) {
+                    if (updates.get(i) == Update.ADD) {
+                        merged.add(keys.get(i));
+                        changed = true;
+                    }
+                    i++;
+                }
+                if (i < k && c == 0) {
+                    wasPresent[i] = true;
+                    if (updates.get(i) == Update.REMOVE) {
+                        changed = true;
+                    } else {
+                        merged.add(x);
+                    }
+                    i++;
+                } else {
+                    merged.add(x);
+                }
+            }
+            while (i < k) {
+                if (updates.get(i) == Update.ADD) {
+                    merged.add(keys.get(i));
+                    changed = true;
+                }
+                i++;
+            }
+
+            if (changed) {
+                long[] prefix = new long[merged.size() + 1];
+                for (int j = 0; j < merged.size(); j++) {
+                    prefix[j + 1] = j + 1;
+                }
+                BinaryTree<T> rebuilt = this.tree.newInstance();
+                buildWeightedTree(merged, prefix, 0, merged.size(), rebuilt);
+                this.tree = rebuilt;
+            }
+        }
+
+        for (int i = 0; i < k; i++) {
+            if (updates.get(i) == Update.ADD && !wasPresent[i]) {
+                this.recordAdd(keys.get(i));
+            } else if (updates.get(i) == Update.REMOVE && wasPresent[i]) {
+                this.recordRemove(keys.get(i));
+            }
+        }
+        return wasPresent;
+    }
+
+    /**
+     * Reports the height of the tree representing {@code this}, for the test
+     * fixtures that check how the shape of the tree scales.
+     *
+     * @return the height of $this.tree
+     * @ensures height = ht($this.tree)
+     */
+    final int height() {
+        return this.tree.height();
+    }
+
+    /**
+     * Removes every element of {@code this}, passing each to {@code action} in
+     * increasing order. Takes the tree apart in one traversal, where draining
+     * it with repeated {@code removeAny} would reassemble the path above every
+     * removed element.
+     *
+     * <p>
+     * If {@code action} throws, the exception propagates and {@code this}
+     * keeps exactly the elements not yet passed to {@code action}; the change
+     * log, if any, gets one remove for each element passed, and only those
+     * elements lose their access counts. A complete drain is logged as one
+     * clear.
+     * </p>
+     *
+     * @param action
+     *            what to do with each element
+     * @return the number of elements drained
+     * @clears this
+     * @ensures <pre>
+     * drainTo = |#this|  and
+     *  [action has been applied to every element of #this, in increasing
+     *   order]
+     * </pre>
+     */
+    public final int drainTo(Consumer<? super T> action) {
+        assert action != null : "Violation of: action is not null";
+
+        int count = this.tree.size();
+        /*
+         * Keeps the elements passed, only while recording, in case action
+         * throws part way through and they have to be recorded one by one.
+         */
+        List<T> passed = null;
+        Consumer<? super T> drain = action;
+        if (this.isRecording()) {
+            List<T> tracked = new ArrayList<>(count);
+            passed = tracked;
+            drain = x -> {
+                action.accept(x);
+                tracked.add(x);
+            };
+        }
+        try {
+            drainTree(this.tree, drain);
+        } finally {
+            if (this.tree.size() == 0 && count > 0) {
+                this.recordClear();
+            } else if (passed != null) {
+                for (T x : passed) {
+                    this.recordRemove(x);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes every element of {@code this} and adds it to {@code c}, in
+     * increasing order.
+     *
+     * @param c
+     *            the collection receiving the elements
+     * @return the number of elements drained
+     * @updates c
+     * @clears this
+     * @ensures <pre>
+     * drainTo = |#this|  and  [every element of #this has been added to c,
+     *  in increasing order]
+     * </pre>
+     */
+    public final int drainTo(Collection<? super T> c) {
+        assert c != null : "Violation of: c is not null";
+
+        return this.drainTo(c::add);
+    }
+
 }
@@ -0,0 +1,330 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import components.set.Set;
+
+/**
+ * Append-only log of the mutations applied to a {@code Set}, used to ship
+ * incremental deltas to replicas instead of full copies.
+ *
+ * <p>
+ * Every entry has a sequence number; the first entry recorded gets sequence
+ * number 1 and each later entry gets the next one. A replica remembers the
+ * sequence number of the last entry it applied and asks for everything after
+ * it with {@code writeDelta}. Entries every replica has already applied can be
+ * dropped with {@code truncate}.
+ * </p>
+ *
+ * <p>
+ * A delta is encoded as the sequence number of its first entry, the number of
+ * entries, and then for each entry a one-byte operation code followed (for
+ * adds and removes) by the element as written by an {@code ElementCodec}.
+ * Sequence numbers of later entries are implied, so they are not written.
+ * </p>
+ *
+ * @param <T>
+ *            type of the logged elements
+ * @mathmodel <pre>
+ * type SetChangeLog is modeled by (
+ *   first: integer,
+ *   entries: string of (op: {ADD, REMOVE, CLEAR}, element: T)
+ *  )
+ * </pre>
+ * @mathdefinitions <pre>
+ * LAST(log: SetChangeLog): integer is log.first + |log.entries| - 1
+ * </pre>
+ * @initially <pre>
+ * ():
+ *  ensures
+ *   this = (1, <>)
+ * </pre>
+ *
+ * @author Shyam Sai Bethina and Yihone Chu
+ *
+ */
+public final class SetChangeLog<T> {
+
+    /**
+     * Encodes and decodes single elements of a delta.
+     *
+     * @param <T>
+     *            type of the encoded elements
+     */
+    public interface ElementCodec<T> {
+
+        /**
+         * Writes {@code x} to {@code out}.
+         *
+         * @param out
+         *            the destination
+         * @param x
+         *            the element to write
+         * @throws IOException
+         *             if {@code out} fails
+         */
+        void write(DataOutput out, T x) throws IOException;
+
+        /**
+         * Reads an element from {@code in}.
+         *
+         * @param in
+         *            the source
+         * @return the element read
+         * @throws IOException
+         *             if {@code in} fails
+         */
+        T read(DataInput in) throws IOException;
+
+    }
+
+    /**
+     * Operation code of an add.
+     */
+    private static final byte ADD = 1;
+
+    /**
+     * Operation code of a remove.
+     */
+    private static final byte REMOVE = 2;
+
+    /**
+     * Operation code of a clear.
+     */
+    private static final byte CLEAR = 3;
+
+    /**
+     * Sequence number of the first entry still held in the log.
+     */
+    private long first;
+
+    /**
+     * Operation codes of the entries held, oldest first.
+     */
+    private final List<Byte> ops;
+
+    /**
+     * Elements of the entries held, oldest first ({@code null} for clears).
+     */
+    private final List<T> elements;
+
+    /**
+     * No-argument constructor.
+     */
+    public SetChangeLog() {
+        this.first = 1;
+        this.ops = new ArrayList<>();
+        this.elements = new ArrayList<>();
+    }
+
+    /**
+     * Returns a codec for {@code String} elements (modified UTF-8).
+     *
+     * @return the codec
+     */
+    public static ElementCodec<String> stringCodec() {
+        return new ElementCodec<String>() {
+            @Override
+            public void write(DataOutput out, String x) throws IOException {
+                out.writeUTF(x);
+            }
+
+            @Override
+            public String read(DataInput in) throws IOException {
+                return in.readUTF();
+            }
+        };
+    }
+
+    /**
+     * Appends one entry.
+     *
+     * @param op
+     *            the operation code
+     * @param x
+     *            the element, or {@code null} for a clear
+     */
+    private void append(byte op, T x) {
+        this.ops.add(op);
+        this.elements.add(x);
+    }
+
+    /**
+     * Records that {@code x} was added.
+     *
+     * @param x
+     *            the added element
+     * @updates this.entries
+     * @ensures this.entries = #this.entries * <(ADD, x)>
+     */
+    public void recordAdd(T x) {
+        assert x != null : "Violation of: x is not null";
+        this.append(ADD, x);
+    }
+
+    /**
+     * Records that {@code x} was removed.
+     *
+     * @param x
+     *            the removed element
+     * @updates this.entries
+     * @ensures this.entries = #this.entries * <(REMOVE, x)>
+     */
+    public void recordRemove(T x) {
+        assert x != null : "Violation of: x is not null";
+        this.append(REMOVE, x);
+    }
+
+    /**
+     * Records that the set was emptied.
+     *
+     * @updates this.entries
+     * @ensures this.entries = #this.entries * <(CLEAR, null)>
+     */
+    public void recordClear() {
+        this.append(CLEAR, null);
+    }
+
+    /**
+     * Reports the sequence number of the most recent entry, or 0 if nothing has
+     * been recorded yet.
+     *
+     * @return the last sequence number
+     * @ensures lastSequenceNumber = LAST(this)
+     */
+    public long lastSequenceNumber() {
+        return this.first + this.ops.size() - 1;
+    }
+
+    /**
+     * Drops every entry with a sequence number up to and including
+     * {@code upTo}.
+     *
+     * @param upTo
+     *            the last sequence number to drop
+     * @updates this
+     * @requires upTo <= LAST(this)
+     * @ensures <pre>
+     * LAST(this) = LAST(#this)  and
+     *  this.first = max(#this.first, upTo + 1)
+     * </pre>
+     */
+    public void truncate(long upTo) {
+        assert upTo <= this.lastSequenceNumber() : ""
+                + "Violation of: upTo <= LAST(this)";
+
+        int drop = (int) Math.max(0, upTo - this.first + 1);
+        if (drop > 0) {
+            this.ops.subList(0, drop).clear();
+            this.elements.subList(0, drop).clear();
+            this.first += drop;
+        }
+    }
+
+    /**
+     * Writes every entry with a sequence number greater than {@code after} to
+     * {@code out} as a single delta.
+     *
+     * @param out
+     *            the destination
+     * @param after
+     *            the last sequence number the receiver has already applied
+     * @param codec
+     *            the element codec
+     * @return the number of entries written
+     * @throws IOException
+     *             if {@code out} fails
+     * @requires this.first - 1 <= after <= LAST(this)
+     */
+    public int writeDelta(DataOutput out, long after, ElementCodec<T> codec)
+            throws IOException {
+        assert out != null : "Violation of: out is not null";
+        assert codec != null : "Violation of: codec is not null";
+        assert this.first - 1 <= after : ""
+                + "Violation of: entries after 'after' are still held";
+        assert after <= this.lastSequenceNumber() : ""
+                + "Violation of: after <= LAST(this)";
+
+        int start = (int) (after - this.first + 1);
+        int count = this.ops.size() - start;
+        out.writeLong(after + 1);
+        out.writeInt(count);
+        for (int i = start; i < this.ops.size(); i++) {
+            byte op = this.ops.get(i);
+            out.writeByte(op);
+            if (op != CLEAR) {
+                codec.write(out, this.elements.get(i));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads one delta from {@code in} and applies it to {@code replica},
+     * skipping entries already applied. Returns the sequence number of the
+     * last entry now reflected in {@code replica}.
+     *
+     * @param <T>
+     *            type of the replica elements
+     * @param in
+     *            the source
+     * @param replica
+     *            the set to bring up to date
+     * @param lastApplied
+     *            the sequence number of the last entry already applied to
+     *            {@code replica}
+     * @param codec
+     *            the element codec
+     * @return the new last applied sequence number
+     * @throws IOException
+     *             if {@code in} fails, or the delta is malformed or starts
+     *             after {@code lastApplied + 1}
+     * @updates replica
+     * @requires [replica reflects exactly the entries up to lastApplied]
+     * @ensures [replica reflects exactly the entries up to applyDelta]
+     */
+    public static <T> long applyDelta(DataInput in, Set<T> replica,
+            long lastApplied, ElementCodec<T> codec) throws IOException {
+        assert in != null : "Violation of: in is not null";
+        assert replica != null : "Violation of: replica is not null";
+        assert codec != null : "Violation of: codec is not null";
+
+        long seq = in.readLong();
+        int count = in.readInt();
+        if (seq > lastApplied + 1) {
+            throw new IOException("Delta starts at " + seq
+                    + " but replica has only applied up to " + lastApplied);
+        }
+        if (count < 0) {
+            throw new IOException("Negative delta length " + count);
+        }
+
+        long applied = lastApplied;
+        for (int i = 0; i < count; i++, seq++) {
+            byte op = in.readByte();
+            T x = null;
+            if (op == ADD || op == REMOVE) {
+                x = codec.read(in);
+            } else if (op != CLEAR) {
+                throw new IOException("Unknown operation code " + op);
+            }
+            /*
+             * Entries the replica already has are decoded and dropped.
+             */
+            if (seq > applied) {
+                if (op == ADD) {
+                    replica.add(x);
+                } else if (op == REMOVE) {
+                    replica.remove(x);
+                } else {
+                    replica.clear();
+                }
+                applied = seq;
+            }
+        }
+        return applied;
+    }
+
+}
@@ -0,0 +1,404 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Front end that lets many producer threads add to and remove from one
+ * {@code Set3a} without serializing them on a lock. Requests are queued and a
+ * single writer thread takes them in batches, coalesces the requests for the
+ * same element, and applies each batch with one {@code Set3a.applyUpdates}
+ * call, which finds out whether each element is present in the same ordered
+ * pass that changes it. Every request is acknowledged through a
+ * {@code CompletableFuture} once its batch has been applied.
+ *
+ * <p>
+ * The acknowledgements are completed on a separate thread, never on the
+ * writer, so a dependent stage attached to one may block on another request
+ * or call {@code close} without stalling the pipeline. The acknowledgements
+ * of one batch are completed in turn on the same thread, so a dependent stage
+ * that blocks delays only the later acknowledgements of its own batch.
+ * </p>
+ *
+ * <p>
+ * Requests for the same element take effect in the order they were
+ * submitted. While the pipeline is open the target set belongs to the writer
+ * thread and must not be used directly; after {@code close} returns it may be
+ * used again.
+ * </p>
+ *
+ * @param <T>
+ *            type of the set elements
+ *
+ * @author Shyam Sai Bethina and Yihone Chu
+ *
+ */
+public final class SetIngestionPipeline<T extends Comparable<T>> {
+
+    /**
+     * Kinds of request.
+     */
+    private enum Kind {
+        /**
+         * Add the element if absent.
+         */
+        ADD,
+        /**
+         * Remove the element if present.
+         */
+        REMOVE,
+        /**
+         * Report whether the element is present.
+         */
+        CONTAINS,
+        /**
+         * Stop the writer after the requests before it.
+         */
+        STOP
+    }
+
+    /**
+     * A queued request and its acknowledgement.
+     *
+     * @param <T>
+     *            type of the set elements
+     */
+    private static final class Request<T> {
+
+        /**
+         * The kind of request.
+         */
+        private final Kind kind;
+
+        /**
+         * The element, or {@code null} for {@code STOP}.
+         */
+        private final T element;
+
+        /**
+         * Completed with the outcome once the request has been applied.
+         */
+        private final CompletableFuture<Boolean> done;
+
+        /**
+         * Constructor.
+         *
+         * @param kind
+         *            the kind of request
+         * @param element
+         *            the element
+         */
+        Request(Kind kind, T element) {
+            this.kind = kind;
+            this.element = element;
+            this.done = new CompletableFuture<>();
+        }
+
+    }
+
+    /**
+     * The set the requests are applied to.
+     */
+    private final Set3a<T> target;
+
+    /**
+     * Maximum number of requests applied as one batch.
+     */
+    private final int maxBatchSize;
+
+    /**
+     * Requests not yet taken by the writer.
+     */
+    private final BlockingQueue<Request<T>> queue;
+
+    /**
+     * The writer thread.
+     */
+    private final Thread writer;
+
+    /**
+     * Completes the acknowledgements, so that dependent stages run off the
+     * writer thread.
+     */
+    private final ExecutorService acknowledger;
+
+    /**
+     * Submits hold the read lock, so they do not exclude each other, and
+     * {@code close} holds the write lock, so that no request can be queued
+     * behind the {@code STOP} request.
+     */
+    private final ReadWriteLock closing;
+
+    /**
+     * Whether {@code close} has been called; written under the write lock of
+     * {@code closing}.
+     */
+    private boolean closed;
+
+    /**
+     * Constructor; starts the writer thread.
+     *
+     * @param target
+     *            the set to apply requests to
+     * @param maxBatchSize
+     *            maximum number of requests applied as one batch
+     * @aliases reference {@code target}
+     * @requires maxBatchSize > 0
+     */
+    public SetIngestionPipeline(Set3a<T> target, int maxBatchSize) {
+        assert target != null : "Violation of: target is not null";
+        assert maxBatchSize > 0 : "Violation of: maxBatchSize > 0";
+
+        this.target = target;
+        this.maxBatchSize = maxBatchSize;
+        /*
+         * LinkedTransferQueue enqueues without a lock, unlike
+         * LinkedBlockingQueue's put lock.
+         */
+        this.queue = new LinkedTransferQueue<>();
+        this.closing = new ReentrantReadWriteLock();
+        this.acknowledger = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "set-ingestion-ack");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer = new Thread(this::run, "set-ingestion-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a request and returns its acknowledgement.
+     *
+     * @param kind
+     *            the kind of request
+     * @param x
+     *            the element
+     * @return the acknowledgement
+     * @throws IllegalStateException
+     *             if {@code this} has been closed
+     */
+    private CompletableFuture<Boolean> submit(Kind kind, T x) {
+        assert x != null : "Violation of: x is not null";
+
+        Request<T> request = new Request<>(kind, x);
+        this.closing.readLock().lock();
+        try {
+            if (this.closed) {
+                throw new IllegalStateException("pipeline is closed");
+            }
+            this.queue.add(request);
+        } finally {
+            this.closing.readLock().unlock();
+        }
+        return request.done;
+    }
+
+    /**
+     * Queues adding {@code x}. The result completes with {@code true} if
+     * {@code x} was added, or {@code false} if it was already in the set.
+     *
+     * @param x
+     *            the element to add
+     * @return the acknowledgement
+     * @throws IllegalStateException
+     *             if {@code this} has been closed
+     */
+    public CompletableFuture<Boolean> add(T x) {
+        return this.submit(Kind.ADD, x);
+    }
+
+    /**
+     * Queues removing {@code x}. The result completes with {@code true} if
+     * {@code x} was removed, or {@code false} if it was not in the set.
+     *
+     * @param x
+     *            the element to remove
+     * @return the acknowledgement
+     * @throws IllegalStateException
+     *             if {@code this} has been closed
+     */
+    public CompletableFuture<Boolean> remove(T x) {
+        return this.submit(Kind.REMOVE, x);
+    }
+
+    /**
+     * Queues a membership test for {@code x}, ordered with the adds and
+     * removes of {@code x} submitted around it.
+     *
+     * @param x
+     *            the element to look for
+     * @return completes with whether {@code x} is in the set
+     * @throws IllegalStateException
+     *             if {@code this} has been closed
+     */
+    public CompletableFuture<Boolean> contains(T x) {
+        return this.submit(Kind.CONTAINS, x);
+    }
+
+    /**
+     * Applies every request already submitted, stops the writer thread and
+     * hands the target set back to the caller. Acknowledgements of the last
+     * requests may complete shortly after {@code close} returns.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the writer
+     */
+    public void close() throws InterruptedException {
+        this.closing.writeLock().lock();
+        try {
+            if (!this.closed) {
+                this.closed = true;
+                this.queue.add(new Request<T>(Kind.STOP, null));
+            }
+        } finally {
+            this.closing.writeLock().unlock();
+        }
+        this.writer.join();
+    }
+
+    /**
+     * Body of the writer thread: takes batches off the queue and applies them
+     * until a {@code STOP} request is reached.
+     */
+    private void run() {
+        List<Request<T>> batch = new ArrayList<>(this.maxBatchSize);
+        boolean stop = false;
+        while (!stop) {
+            batch.clear();
+            try {
+                batch.add(this.queue.take());
+            } catch (InterruptedException e) {
+                /*
+                 * Nothing else interrupts the writer; keep serving until STOP.
+                 */
+                continue;
+            }
+            this.queue.drainTo(batch, this.maxBatchSize - 1);
+            /*
+             * close queues STOP last, but the writer does not rely on that:
+             * anything taken after STOP is failed rather than left waiting.
+             */
+            int end = 0;
+            while (end < batch.size() && batch.get(end).kind != Kind.STOP) {
+                end++;
+            }
+            if (end < batch.size()) {
+                stop = true;
+                this.fail(batch.subList(end + 1, batch.size()),
+                        new IllegalStateException("pipeline is closed"));
+            }
+            this.apply(batch.subList(0, end));
+        }
+        /*
+         * Acknowledgements already handed over still run.
+         */
+        this.acknowledger.shutdown();
+    }
+
+    /**
+     * Completes the acknowledgements of {@code requests} exceptionally with
+     * {@code e}, on the acknowledger.
+     *
+     * @param requests
+     *            the requests
+     * @param e
+     *            the cause of the failure
+     */
+    private void fail(List<Request<T>> requests, Throwable e) {
+        List<Request<T>> failed = new ArrayList<>(requests);
+        if (!failed.isEmpty()) {
+            this.acknowledger.execute(() -> {
+                for (Request<T> request : failed) {
+                    request.done.completeExceptionally(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Applies one batch of requests to the target and hands the completion of
+     * their acknowledgements to the acknowledger.
+     *
+     * @param batch
+     *            the requests, in submission order
+     */
+    private void apply(List<Request<T>> batch) {
+        List<Request<T>> ordered = new ArrayList<>(batch.size());
+        List<Boolean> outcomes = new ArrayList<>(batch.size());
+        try {
+            /*
+             * Groups the requests by element; TreeMap keeps the elements
+             * sorted and each group keeps submission order.
+             */
+            Map<T, List<Request<T>>> byElement = new TreeMap<>();
+            for (Request<T> request : batch) {
+                byElement.computeIfAbsent(request.element,
+                        e -> new ArrayList<>()).add(request);
+            }
+
+            /*
+             * The last ADD or REMOVE of each element decides whether it ends
+             * up present, whatever its membership was before.
+             */
+            List<T> keys = new ArrayList<>(byElement.size());
+            List<Set3a.Update> updates = new ArrayList<>(byElement.size());
+            for (Map.Entry<T, List<Request<T>>> group : byElement.entrySet()) {
+                Set3a.Update update = Set3a.Update.LOOKUP;
+                for (Request<T> request : group.getValue()) {
+                    if (request.kind == Kind.ADD) {
+                        update = Set3a.Update.ADD;
+                    } else if (request.kind == Kind.REMOVE) {
+                        update = Set3a.Update.REMOVE;
+                    }
+                }
+                keys.add(group.getKey());
+                updates.add(update);
+            }
+            boolean[] wasPresent = this.target.applyUpdates(keys, updates);
+
+            /*
+             * Plays each element's requests against its membership before the
+             * batch to get every request's outcome.
+             */
+            int i = 0;
+            for (List<Request<T>> group : byElement.values()) {
+                boolean present = wasPresent[i];
+                for (Request<T> request : group) {
+                    boolean outcome;
+                    if (request.kind == Kind.ADD) {
+                        outcome = !present;
+                        present = true;
+                    } else if (request.kind == Kind.REMOVE) {
+                        outcome = present;
+                        present = false;
+                    } else {
+                        outcome = present;
+                    }
+                    ordered.add(request);
+                    outcomes.add(outcome);
+                }
+                i++;
+            }
+        } catch (RuntimeException | Error e) {
+            this.fail(batch, e);
+            return;
+        }
+
+        if (!ordered.isEmpty()) {
+            this.acknowledger.execute(() -> {
+                for (int i = 0; i < ordered.size(); i++) {
+                    ordered.get(i).done.complete(outcomes.get(i));
+                }
+            });
+        }
+    }
+
+}
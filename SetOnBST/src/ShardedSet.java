@@ -0,0 +1,568 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a fixed number of {@code Set3a} partitions
+ * ("shards"), each guarded by its own lock, with implementations of primary
+ * methods. Each element lives in the shard picked by its hash code, so
+ * operations on elements of different shards proceed in parallel.
+ *
+ * <p>
+ * The kernel methods, {@code addAll}, {@code removeAll}, the iterators and the
+ * metrics methods may be called concurrently from several threads. The
+ * standard methods ({@code clear}, {@code transferFrom}) may not. Iterators
+ * walk a snapshot taken shard by shard when the iterator is created.
+ * </p>
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @mathdefinitions <pre>
+ * SHARD_OF(
+ *   x: T,
+ *   n: integer
+ *  ): integer is [index in [0, n) computed from the hash code of x]
+ * </pre>
+ * @convention <pre>
+ * |$this.shards| = |$this.locks| > 0  and
+ *  for all i: integer, x: T
+ *      where (0 <= i < |$this.shards|  and  x is in $this.shards[i])
+ *    (SHARD_OF(x, |$this.shards|) = i)
+ * </pre>
+ * @correspondence <pre>
+ * this = union i: integer where (0 <= i < |$this.shards|) ($this.shards[i])
+ * </pre>
+ *
+ * @author Shyam Sai Bethina and Yihone Chu
+ *
+ */
+public class ShardedSet<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Number of shards used by the no-argument constructor.
+     */
+    private static final int DEFAULT_SHARD_COUNT = Runtime.getRuntime()
+            .availableProcessors();
+
+    /**
+     * Partitions of the elements of {@code this}.
+     */
+    private Set3a<T>[] shards;
+
+    /**
+     * Lock guarding each shard.
+     */
+    private ReentrantLock[] locks;
+
+    /**
+     * Number of times each shard's lock has been acquired.
+     */
+    private AtomicLong[] acquisitions;
+
+    /**
+     * Number of times each shard's lock was held by another thread when
+     * requested.
+     */
+    private AtomicLong[] contended;
+
+    /**
+     * Index of the shard {@code removeAny} tries first.
+     */
+    private final AtomicLong nextRemoveAny = new AtomicLong();
+
+    /**
+     * Returns the index of the shard {@code x} belongs to among {@code n}
+     * shards.
+     *
+     * @param x
+     *            the element
+     * @param n
+     *            the number of shards
+     * @return the shard index
+     * @requires n > 0
+     * @ensures shardOf = SHARD_OF(x, n)
+     */
+    private static int shardOf(Object x, int n) {
+        /*
+         * Folds the high bits into the low ones so hash codes that differ only
+         * in the high bits still spread across shards.
+         */
+        int h = x.hashCode();
+        h ^= h >>> 16;
+        return Math.floorMod(h, n);
+    }
+
+    /**
+     * Acquires the lock of shard {@code i}, updating the metrics.
+     *
+     * @param i
+     *            the shard index
+     */
+    private void lock(int i) {
+        this.acquisitions[i].incrementAndGet();
+        if (!this.locks[i].tryLock()) {
+            this.contended[i].incrementAndGet();
+            this.locks[i].lock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the elements of shard {@code i}, in increasing
+     * order.
+     *
+     * @param i
+     *            the shard index
+     * @return the elements of shard {@code i}
+     */
+    private List<T> snapshot(int i) {
+        List<T> elements = new ArrayList<>();
+        this.lock(i);
+        try {
+            for (T x : this.shards[i]) {
+                elements.add(x);
+            }
+        } finally {
+            this.locks[i].unlock();
+        }
+        return elements;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param shardCount
+     *            the number of shards
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void createNewRep(int shardCount) {
+        this.shards = new Set3a[shardCount];
+        this.locks = new ReentrantLock[shardCount];
+        this.acquisitions = new AtomicLong[shardCount];
+        this.contended = new AtomicLong[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            this.shards[i] = new Set3a<T>();
+            this.locks[i] = new ReentrantLock();
+            this.acquisitions[i] = new AtomicLong();
+            this.contended[i] = new AtomicLong();
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor, using one shard per available processor.
+     */
+    public ShardedSet() {
+        this.createNewRep(DEFAULT_SHARD_COUNT);
+    }
+
+    /**
+     * Constructor with a given number of shards.
+     *
+     * @param shardCount
+     *            the number of shards
+     * @requires shardCount > 0
+     */
+    public ShardedSet(int shardCount) {
+        assert shardCount > 0 : "Violation of: shardCount > 0";
+        this.createNewRep(shardCount);
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().getConstructor(int.class)
+                    .newInstance(this.shards.length);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(this.shards.length);
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof ShardedSet<?> : ""
+                + "Violation of: source is of dynamic type ShardedSet<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * ShardedSet<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        ShardedSet<T> localSource = (ShardedSet<T>) source;
+        this.shards = localSource.shards;
+        this.locks = localSource.locks;
+        this.acquisitions = localSource.acquisitions;
+        this.contended = localSource.contended;
+        localSource.createNewRep(this.shards.length);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        int i = shardOf(x, this.shards.length);
+        this.lock(i);
+        try {
+            assert !this.shards[i].contains(x) : ""
+                    + "Violation of: x is not in this";
+            this.shards[i].add(x);
+        } finally {
+            this.locks[i].unlock();
+        }
+    }
+
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        int i = shardOf(x, this.shards.length);
+        this.lock(i);
+        try {
+            assert this.shards[i].contains(x) : "Violation of: x is in this";
+            return this.shards[i].remove(x);
+        } finally {
+            this.locks[i].unlock();
+        }
+    }
+
+    @Override
+    public final T removeAny() {
+        /*
+         * Starts at a rotating shard so concurrent callers spread out instead
+         * of all contending for the first non-empty shard.
+         */
+        int n = this.shards.length;
+        int start = (int) (this.nextRemoveAny.getAndIncrement() % n);
+        T answer = null;
+        for (int k = 0; k < n && answer == null; k++) {
+            int i = (start + k) % n;
+            this.lock(i);
+            try {
+                if (this.shards[i].size() > 0) {
+                    answer = this.shards[i].removeAny();
+                }
+            } finally {
+                this.locks[i].unlock();
+            }
+        }
+        assert answer != null : "Violation of: this /= empty_set";
+        return answer;
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        int i = shardOf(x, this.shards.length);
+        this.lock(i);
+        try {
+            return this.shards[i].contains(x);
+        } finally {
+            this.locks[i].unlock();
+        }
+    }
+
+    @Override
+    public final int size() {
+        int size = 0;
+        for (int i = 0; i < this.shards.length; i++) {
+            this.lock(i);
+            try {
+                size += this.shards[i].size();
+            } finally {
+                this.locks[i].unlock();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        List<T> elements = new ArrayList<>();
+        for (int i = 0; i < this.shards.length; i++) {
+            elements.addAll(this.snapshot(i));
+        }
+        return Collections.unmodifiableList(elements).iterator();
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Adds every element of {@code elements} to {@code this}, inserting into
+     * the shards in parallel with one lock acquisition per shard.
+     *
+     * @param elements
+     *            the elements to add
+     * @updates this
+     * @requires <pre>
+     * [the entries of elements are distinct and none of them is in this]
+     * </pre>
+     * @ensures this = #this union [entries of elements]
+     */
+    public final void addAll(Iterable<T> elements) {
+        assert elements != null : "Violation of: elements is not null";
+
+        List<List<T>> byShard = this.partition(elements);
+        IntStream.range(0, this.shards.length).parallel().forEach(i -> {
+            if (!byShard.get(i).isEmpty()) {
+                this.lock(i);
+                try {
+                    for (T x : byShard.get(i)) {
+                        this.shards[i].add(x);
+                    }
+                } finally {
+                    this.locks[i].unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes every element of {@code elements} from {@code this}, removing
+     * from the shards in parallel with one lock acquisition per shard.
+     *
+     * @param elements
+     *            the elements to remove
+     * @updates this
+     * @requires <pre>
+     * [the entries of elements are distinct and all of them are in this]
+     * </pre>
+     * @ensures this = #this \ [entries of elements]
+     */
+    public final void removeAll(Iterable<T> elements) {
+        assert elements != null : "Violation of: elements is not null";
+
+        List<List<T>> byShard = this.partition(elements);
+        IntStream.range(0, this.shards.length).parallel().forEach(i -> {
+            if (!byShard.get(i).isEmpty()) {
+                this.lock(i);
+                try {
+                    for (T x : byShard.get(i)) {
+                        this.shards[i].remove(x);
+                    }
+                } finally {
+                    this.locks[i].unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Groups {@code elements} by the shard they belong to.
+     *
+     * @param elements
+     *            the elements to group
+     * @return one list per shard, holding the elements belonging to it
+     */
+    private List<List<T>> partition(Iterable<T> elements) {
+        List<List<T>> byShard = new ArrayList<>(this.shards.length);
+        for (int i = 0; i < this.shards.length; i++) {
+            byShard.add(new ArrayList<T>());
+        }
+        for (T x : elements) {
+            assert x != null : "Violation of: entries of elements are not null";
+            byShard.get(shardOf(x, this.shards.length)).add(x);
+        }
+        return byShard;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of {@code this} that yields the
+     * elements in increasing order, merging the already ordered shards.
+     *
+     * @return an ordered iterator over {@code this}
+     * @ensures [orderedIterator yields the elements of this in increasing
+     *          order]
+     */
+    public final Iterator<T> orderedIterator() {
+        List<Iterator<T>> runs = new ArrayList<>(this.shards.length);
+        for (int i = 0; i < this.shards.length; i++) {
+            runs.add(this.snapshot(i).iterator());
+        }
+        return new MergingIterator<T>(runs);
+    }
+
+    /**
+     * Reports the number of shards of {@code this}.
+     *
+     * @return the number of shards
+     * @ensures shardCount = |$this.shards|
+     */
+    public final int shardCount() {
+        return this.shards.length;
+    }
+
+    /**
+     * Reports the number of elements in shard {@code i}.
+     *
+     * @param i
+     *            the shard index
+     * @return the size of shard {@code i}
+     * @requires 0 <= i < shardCount
+     * @ensures shardSize = |$this.shards[i]|
+     */
+    public final int shardSize(int i) {
+        assert 0 <= i && i < this.shards.length : ""
+                + "Violation of: 0 <= i < shardCount";
+
+        this.lock(i);
+        try {
+            return this.shards[i].size();
+        } finally {
+            this.locks[i].unlock();
+        }
+    }
+
+    /**
+     * Reports how many times the lock of shard {@code i} has been acquired.
+     *
+     * @param i
+     *            the shard index
+     * @return the number of acquisitions
+     * @requires 0 <= i < shardCount
+     */
+    public final long lockAcquisitions(int i) {
+        assert 0 <= i && i < this.shards.length : ""
+                + "Violation of: 0 <= i < shardCount";
+
+        return this.acquisitions[i].get();
+    }
+
+    /**
+     * Reports how many times the lock of shard {@code i} was held by another
+     * thread when requested, making the requesting thread wait.
+     *
+     * @param i
+     *            the shard index
+     * @return the number of contended acquisitions
+     * @requires 0 <= i < shardCount
+     */
+    public final long contendedAcquisitions(int i) {
+        assert 0 <= i && i < this.shards.length : ""
+                + "Violation of: 0 <= i < shardCount";
+
+        return this.contended[i].get();
+    }
+
+    /**
+     * Iterator merging several iterators that each yield increasing elements.
+     *
+     * @param <T>
+     *            type of the elements
+     */
+    private static final class MergingIterator<T extends Comparable<T>>
+            implements Iterator<T> {
+
+        /**
+         * Current head of each non-exhausted run, with the run it came from.
+         */
+        private final PriorityQueue<Head<T>> heads;
+
+        /**
+         * Constructor from the runs to merge.
+         *
+         * @param runs
+         *            the iterators to merge
+         */
+        MergingIterator(List<Iterator<T>> runs) {
+            this.heads = new PriorityQueue<>(Math.max(1, runs.size()));
+            for (Iterator<T> run : runs) {
+                if (run.hasNext()) {
+                    this.heads.add(new Head<T>(run.next(), run));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !this.heads.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if (this.heads.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Head<T> head = this.heads.poll();
+            if (head.run.hasNext()) {
+                this.heads.add(new Head<T>(head.run.next(), head.run));
+            }
+            return head.element;
+        }
+
+    }
+
+    /**
+     * Next element of a run being merged.
+     *
+     * @param <T>
+     *            type of the elements
+     */
+    private static final class Head<T extends Comparable<T>>
+            implements Comparable<Head<T>> {
+
+        /**
+         * The element.
+         */
+        private final T element;
+
+        /**
+         * The run the element came from.
+         */
+        private final Iterator<T> run;
+
+        /**
+         * Constructor.
+         *
+         * @param element
+         *            the element
+         * @param run
+         *            the run it came from
+         */
+        Head(T element, Iterator<T> run) {
+            this.element = element;
+            this.run = run;
+        }
+
+        @Override
+        public int compareTo(Head<T> other) {
+            return this.element.compareTo(other.element);
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code AdaptiveSet}. The threshold is
+ * kept small so the shared {@code SetTest} cases cross it.
+ */
+public class AdaptiveSetTest extends SetTest {
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new AdaptiveSet<String>(2);
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /**
+     * Test that the set promotes past the threshold and demotes only below
+     * half of it.
+     */
+    @Test
+    public void testPromoteAndDemote() {
+        AdaptiveSet<String> test = new AdaptiveSet<String>(4);
+        Set<String> expected = new Set1L<String>();
+        for (String s : new String[] { "d", "b", "a", "c" }) {
+            test.add(s);
+            expected.add(s);
+        }
+        assertEquals(false, test.isTree());
+
+        test.add("e");
+        expected.add("e");
+        assertEquals(true, test.isTree());
+        assertEquals(expected, test);
+
+        test.remove("a");
+        expected.remove("a");
+        test.remove("e");
+        expected.remove("e");
+        assertEquals(true, test.isTree());
+
+        test.remove("c");
+        expected.remove("c");
+        assertEquals(true, test.isTree());
+
+        test.remove("b");
+        expected.remove("b");
+        assertEquals(false, test.isTree());
+        assertEquals(expected, test);
+        assertEquals(true, test.contains("d"));
+    }
+
+    /**
+     * Test that with a threshold of 1 the set still demotes once emptied.
+     */
+    @Test
+    public void testThresholdOne() {
+        AdaptiveSet<String> test = new AdaptiveSet<String>(1);
+        test.add("hello");
+        assertEquals(false, test.isTree());
+        test.add("there");
+        assertEquals(true, test.isTree());
+
+        test.remove("hello");
+        assertEquals(true, test.isTree());
+        test.remove("there");
+        assertEquals(false, test.isTree());
+        test.add("general");
+        assertEquals(true, test.contains("general"));
+        assertEquals(1, test.size());
+    }
+
+    /**
+     * Test that the array keeps its elements sorted as it grows.
+     */
+    @Test
+    public void testArrayGrows() {
+        AdaptiveSet<String> test = new AdaptiveSet<String>(12);
+        Set<String> expected = new Set1L<String>();
+        for (int i = 11; i >= 0; i--) {
+            test.add("k" + (char) ('a' + i));
+            expected.add("k" + (char) ('a' + i));
+            assertEquals(false, test.isTree());
+            assertEquals(expected, test);
+        }
+    }
+
+    /**
+     * Test that the array representation stays sorted under removeAny.
+     */
+    @Test
+    public void testRemoveAnySmall() {
+        AdaptiveSet<String> test = new AdaptiveSet<String>(8);
+        test.add("there");
+        test.add("hello");
+        test.add("general");
+
+        String removed = test.removeAny();
+
+        assertEquals("there", removed);
+        assertEquals(true, test.contains("general"));
+        assertEquals(true, test.contains("hello"));
+        assertEquals(2, test.size());
+    }
+
+}
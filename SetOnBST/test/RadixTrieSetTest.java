@@ -0,0 +1,125 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code RadixTrieSet}.
+ */
+public class RadixTrieSetTest extends SetTest {
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new RadixTrieSet();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /**
+     * Creates and returns a {@code RadixTrieSet} with the given entries.
+     *
+     * @param args
+     *            the entries for the set
+     * @return the constructed set
+     * @requires [every entry in args is unique]
+     * @ensures createFromArgs = [entries in args]
+     */
+    private static RadixTrieSet createFromArgs(String... args) {
+        RadixTrieSet set = new RadixTrieSet();
+        for (String s : args) {
+            set.add(s);
+        }
+        return set;
+    }
+
+    /**
+     * Returns the elements yielded by {@code it}, each followed by a space.
+     *
+     * @param it
+     *            the iterator
+     * @return the yielded elements
+     */
+    private static String drain(Iterator<String> it) {
+        StringBuilder seen = new StringBuilder();
+        while (it.hasNext()) {
+            seen.append(it.next()).append(' ');
+        }
+        return seen.toString();
+    }
+
+    /**
+     * Test that elements that are prefixes of each other coexist, and removing
+     * them merges the split edges back.
+     */
+    @Test
+    public void testSharedPrefixes() {
+        RadixTrieSet test = createFromArgs("/a/b/c", "/a/b", "/a/bd", "/a",
+                "");
+        test.remove("/a/b");
+        test.remove("/a");
+
+        assertEquals(false, test.contains("/a/b"));
+        assertEquals(false, test.contains("/a/"));
+        assertEquals(true, test.contains("/a/b/c"));
+        assertEquals(true, test.contains("/a/bd"));
+        assertEquals(" /a/b/c /a/bd ", drain(test.iterator()));
+    }
+
+    /**
+     * Test that iteration is in increasing order.
+     */
+    @Test
+    public void testIteratorOrder() {
+        RadixTrieSet test = createFromArgs("there", "hello", "help", "he",
+                "general", "");
+
+        assertEquals(" general he hello help there ", drain(test.iterator()));
+    }
+
+    /**
+     * Test prefixIterator with prefixes ending on and inside edges.
+     */
+    @Test
+    public void testPrefixIterator() {
+        RadixTrieSet test = createFromArgs("http://a.com/x", "http://a.com/y",
+                "http://b.org", "ftp://a.com");
+
+        assertEquals("http://a.com/x http://a.com/y http://b.org ",
+                drain(test.prefixIterator("http://")));
+        assertEquals("http://a.com/x http://a.com/y ",
+                drain(test.prefixIterator("http://a")));
+        assertEquals("http://a.com/y ",
+                drain(test.prefixIterator("http://a.com/y")));
+        assertEquals("", drain(test.prefixIterator("http://c")));
+        assertEquals("", drain(test.prefixIterator("http://a.com/yz")));
+        assertEquals(4, drain(test.prefixIterator("")).split(" ").length);
+    }
+
+    /**
+     * Test that removeAny empties the set one element at a time.
+     */
+    @Test
+    public void testRemoveAnyDrains() {
+        RadixTrieSet test = createFromArgs("hello", "he", "", "help");
+        Set<String> removed = new Set1L<String>();
+        while (test.size() > 0) {
+            removed.add(test.removeAny());
+        }
+
+        Set<String> expected = new Set1L<String>();
+        expected.add("hello");
+        expected.add("he");
+        expected.add("");
+        expected.add("help");
+        assertEquals(expected, removed);
+        assertEquals(new RadixTrieSet(), test);
+    }
+
+}
@@ -0,0 +1,428 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.binarytree.BinaryTree1;
+
+/**
+ * JUnit test fixture checking that the cost of the {@code Set3a} kernel grows
+ * as expected with the size of the set. Sets of 10^3 to 10^6 elements are
+ * built from keys in sorted, reverse and random order. Every comparison of a
+ * key and every tree allocated are counted through instrumented wrappers, and
+ * the counts and the tree height are checked against O(log n) (or, where that
+ * is the known behavior of the unbalanced kernel, O(n)) envelopes. No timings
+ * are involved and all orders come from fixed seeds, so results are the same
+ * on every run.
+ *
+ * @author Shyam Sai Bethina and Yihone Chu
+ *
+ */
+public class Set3aScalabilityTest {
+
+    /**
+     * Set sizes checked against logarithmic envelopes.
+     */
+    private static final int[] SIZES = { 1000, 10000, 100000, 1000000 };
+
+    /**
+     * Set sizes used where every check needs its own tree built one add at a
+     * time; the largest size is left to the insertion test to keep the suite
+     * quick.
+     */
+    private static final int[] REBUILT_SIZES = { 1000, 10000, 100000 };
+
+    /**
+     * Number of lookups sampled per size when measuring search cost.
+     */
+    private static final int LOOKUPS = 10000;
+
+    /**
+     * Maximum height of a tree built from random-order inserts, per
+     * log2(n). A random binary search tree has expected height about
+     * 3 log2(n).
+     */
+    private static final double RANDOM_HEIGHT_FACTOR = 3.5;
+
+    /**
+     * Maximum mean key comparisons per successful {@code contains}, per
+     * log2(n). {@code contains} makes two comparisons per level and a random
+     * tree has mean depth about 1.39 log2(n).
+     */
+    private static final double LOOKUP_COMPARE_FACTOR = 3.5;
+
+    /**
+     * Maximum key comparisons per kernel call, per level of the tree (plus
+     * one): at most two in {@code contains} and three in the tree helpers.
+     */
+    private static final int COMPARES_PER_LEVEL = 5;
+
+    /**
+     * Maximum trees allocated per kernel call, per level of the tree (plus
+     * one). Each level visited costs two trees for the search done by the
+     * precondition check and two for the update itself, and the tree
+     * implementation may allocate as many again internally.
+     */
+    private static final int ALLOCATIONS_PER_LEVEL = 8;
+
+    /**
+     * {@code BinaryTree1} that counts how many instances are created.
+     *
+     * @param <T>
+     *            type of {@code BinaryTree} labels
+     */
+    public static final class CountingBinaryTree<T> extends BinaryTree1<T> {
+
+        /**
+         * Number of instances created since the last reset.
+         */
+        private static long allocations = 0;
+
+        /**
+         * No-argument constructor.
+         */
+        public CountingBinaryTree() {
+            super();
+            allocations++;
+        }
+
+    }
+
+    /**
+     * Integer key that counts how many times it is compared.
+     */
+    private static final class Key implements Comparable<Key> {
+
+        /**
+         * Number of calls to {@code compareTo} and {@code equals} since the
+         * last reset.
+         */
+        private static long comparisons = 0;
+
+        /**
+         * The value of the key.
+         */
+        private final int value;
+
+        /**
+         * Constructor.
+         *
+         * @param value
+         *            the value of the key
+         */
+        Key(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            comparisons++;
+            return Integer.compare(this.value, other.value);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            comparisons++;
+            return other instanceof Key && ((Key) other).value == this.value;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.value;
+        }
+
+    }
+
+    /**
+     * Orders in which keys are fed to the kernel.
+     */
+    private enum Order {
+        /**
+         * Increasing order.
+         */
+        SORTED,
+        /**
+         * Decreasing order.
+         */
+        REVERSE,
+        /**
+         * A fixed pseudo-random permutation.
+         */
+        RANDOM
+    }
+
+    /**
+     * Returns the keys 0 through {@code n - 1} in the given order.
+     *
+     * @param n
+     *            the number of keys
+     * @param order
+     *            the order
+     * @return the keys
+     */
+    private static Key[] keys(int n, Order order) {
+        Key[] keys = new Key[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = new Key(i);
+        }
+        if (order == Order.REVERSE) {
+            Collections.reverse(Arrays.asList(keys));
+        } else if (order == Order.RANDOM) {
+            Collections.shuffle(Arrays.asList(keys), new Random(n));
+        }
+        return keys;
+    }
+
+    /**
+     * Returns an empty {@code Set3a} built on counting trees.
+     *
+     * @return the new set
+     */
+    private static Set3a<Key> newSet() {
+        return new Set3a<Key>(new CountingBinaryTree<Key>());
+    }
+
+    /**
+     * Returns log2(n).
+     *
+     * @param n
+     *            the argument
+     * @return log2(n)
+     */
+    private static double log2(int n) {
+        return Math.log(n) / Math.log(2);
+    }
+
+    /**
+     * Returns the height of a perfectly balanced tree with {@code n} nodes.
+     *
+     * @param n
+     *            the number of nodes
+     * @return ceil(log2(n + 1))
+     */
+    private static int balancedHeight(int n) {
+        return 32 - Integer.numberOfLeadingZeros(n);
+    }
+
+    /**
+     * Adds {@code keys} one at a time, checking every add against the
+     * per-level envelopes.
+     *
+     * @param set
+     *            the set to add to
+     * @param keys
+     *            the keys to add
+     * @param maxHeight
+     *            bound on the height of the tree at any point
+     */
+    private static void addAll(Set3a<Key> set, Key[] keys, int maxHeight) {
+        for (Key key : keys) {
+            Key.comparisons = 0;
+            CountingBinaryTree.allocations = 0;
+            set.add(key);
+            assertTrue("compares per add",
+                    Key.comparisons <= COMPARES_PER_LEVEL * (maxHeight + 1));
+            assertTrue("allocations per add", CountingBinaryTree.allocations
+                    <= ALLOCATIONS_PER_LEVEL * (maxHeight + 1));
+        }
+    }
+
+    /**
+     * Test that random-order inserts keep the height and per-call costs
+     * logarithmic, and lookups cost O(log n) comparisons.
+     */
+    @Test
+    public void testRandomInsertIsLogarithmic() {
+        for (int n : SIZES) {
+            Key[] keys = keys(n, Order.RANDOM);
+            int maxHeight = (int) (RANDOM_HEIGHT_FACTOR * log2(n));
+            Set3a<Key> set = newSet();
+            addAll(set, keys, maxHeight);
+
+            assertEquals(n, set.size());
+            assertTrue("height " + set.height() + " at n = " + n,
+                    set.height() <= maxHeight);
+
+            int lookups = Math.min(n, LOOKUPS);
+            Key.comparisons = 0;
+            for (int i = 0; i < lookups; i++) {
+                assertTrue(set.contains(keys[i]));
+            }
+            double perLookup = (double) Key.comparisons / lookups;
+            assertTrue("compares per lookup " + perLookup + " at n = " + n,
+                    perLookup <= LOOKUP_COMPARE_FACTOR * log2(n));
+        }
+    }
+
+    /**
+     * Test that random-order removals stay within the per-level envelopes and
+     * never make the tree taller.
+     */
+    @Test
+    public void testRandomRemoveIsLogarithmic() {
+        for (int n : REBUILT_SIZES) {
+            Key[] keys = keys(n, Order.RANDOM);
+            int maxHeight = (int) (RANDOM_HEIGHT_FACTOR * log2(n));
+            Set3a<Key> set = newSet();
+            addAll(set, keys, maxHeight);
+            int height = set.height();
+
+            List<Key> victims = new ArrayList<>(Arrays.asList(keys));
+            Collections.shuffle(victims, new Random(-n));
+            for (Key key : victims.subList(0, Math.min(n / 2, LOOKUPS))) {
+                Key.comparisons = 0;
+                CountingBinaryTree.allocations = 0;
+                set.remove(key);
+                assertTrue("compares per remove",
+                        Key.comparisons <= COMPARES_PER_LEVEL * (height + 1));
+                assertTrue("allocations per remove",
+                        CountingBinaryTree.allocations
+                                <= ALLOCATIONS_PER_LEVEL * (height + 1));
+            }
+            assertTrue(set.height() <= height);
+        }
+    }
+
+    /**
+     * Test that sorted, reverse and random keys loaded in ten sorted batches
+     * through {@code applyBatch} give a perfectly balanced tree, with O(n)
+     * comparisons and allocations per batch.
+     */
+    @Test
+    public void testBatchLoadIsBalanced() {
+        for (Order order : Order.values()) {
+            for (int n : SIZES) {
+                Key[] keys = keys(n, order);
+                Set3a<Key> set = newSet();
+                int batchSize = n / 10;
+                for (int from = 0; from < n; from += batchSize) {
+                    List<Key> batch = new ArrayList<>(Arrays
+                            .asList(keys).subList(from, from + batchSize));
+                    Collections.sort(batch);
+                    int total = set.size() + batch.size();
+
+                    Key.comparisons = 0;
+                    CountingBinaryTree.allocations = 0;
+                    set.applyBatch(batch, Collections.<Key> emptyList());
+                    assertTrue(order + " compares per batch",
+                            Key.comparisons <= 2L * total);
+                    assertTrue(order + " allocations per batch",
+                            CountingBinaryTree.allocations
+                                    <= (long) ALLOCATIONS_PER_LEVEL * total);
+                }
+
+                assertEquals(n, set.size());
+                assertEquals(order + " height at n = " + n,
+                        balancedHeight(n), set.height());
+            }
+        }
+    }
+
+    /**
+     * Test that removeRange touches only O(height) of the tree however many
+     * elements it cuts out.
+     */
+    @Test
+    public void testRemoveRangeIsLogarithmic() {
+        for (int n : REBUILT_SIZES) {
+            Key[] keys = keys(n, Order.RANDOM);
+            int maxHeight = (int) (RANDOM_HEIGHT_FACTOR * log2(n));
+            Set3a<Key> set = newSet();
+            addAll(set, keys, maxHeight);
+            int height = set.height();
+
+            Key.comparisons = 0;
+            CountingBinaryTree.allocations = 0;
+            Set3a<Key> removed = set.removeRange(new Key(n / 4),
+                    new Key(3 * n / 4));
+
+            assertEquals(n / 2, removed.size());
+            assertEquals(n - n / 2, set.size());
+            assertTrue("compares per removeRange",
+                    Key.comparisons <= 2L * (height + 1));
+            assertTrue("allocations per removeRange",
+                    CountingBinaryTree.allocations
+                            <= 3L * ALLOCATIONS_PER_LEVEL * (height + 1));
+        }
+    }
+
+    /**
+     * Test that sorted and reverse one-at-a-time inserts, which the
+     * unbalanced kernel turns into a linear chain, cost no more than that
+     * chain implies, and that a rebuild restores logarithmic height. If the
+     * kernel ever learns to balance itself this test will need updating,
+     * which is the point.
+     */
+    @Test
+    public void testSortedInsertIsLinear() {
+        final int[] sizes = { 1000, 2000 };
+        for (Order order : new Order[] { Order.SORTED, Order.REVERSE }) {
+            for (int n : sizes) {
+                Set3a<Key> set = newSet();
+                addAll(set, keys(n, order), n);
+
+                assertEquals(order + " height at n = " + n, n, set.height());
+
+                set.rebuildByAccessFrequency();
+                assertEquals(order + " rebuilt height at n = " + n,
+                        balancedHeight(n), set.height());
+            }
+        }
+    }
+
+    /**
+     * Test that removeAny never searches: it makes no comparisons, costs
+     * O(1) on a chain whose root always has an empty subtree, and O(log n)
+     * on a random tree; and that drainTo empties a set in O(n).
+     */
+    @Test
+    public void testRemoveAnyAndDrainAreCheap() {
+        for (Order order : new Order[] { Order.SORTED, Order.REVERSE }) {
+            final int n = 2000;
+            Set3a<Key> chain = newSet();
+            addAll(chain, keys(n, order), n);
+            while (chain.size() > 0) {
+                Key.comparisons = 0;
+                CountingBinaryTree.allocations = 0;
+                chain.removeAny();
+                assertEquals(0, Key.comparisons);
+                assertTrue(order + " allocations per removeAny",
+                        CountingBinaryTree.allocations
+                                <= ALLOCATIONS_PER_LEVEL);
+            }
+        }
+
+        for (int n : REBUILT_SIZES) {
+            int maxHeight = (int) (RANDOM_HEIGHT_FACTOR * log2(n));
+            Set3a<Key> set = newSet();
+            addAll(set, keys(n, Order.RANDOM), maxHeight);
+            for (int i = 0; i < n / 2; i++) {
+                Key.comparisons = 0;
+                CountingBinaryTree.allocations = 0;
+                set.removeAny();
+                assertEquals(0, Key.comparisons);
+                assertTrue("allocations per removeAny",
+                        CountingBinaryTree.allocations
+                                <= ALLOCATIONS_PER_LEVEL * (log2(n) + 1));
+            }
+
+            Key.comparisons = 0;
+            CountingBinaryTree.allocations = 0;
+            int drained = set.drainTo(key -> {
+            });
+            assertEquals(n - n / 2, drained);
+            assertEquals(0, Key.comparisons);
+            assertTrue("allocations per drainTo",
+                    CountingBinaryTree.allocations
+                            <= (long) ALLOCATIONS_PER_LEVEL * drained);
+            assertEquals(0, set.size());
+        }
+    }
+
+}
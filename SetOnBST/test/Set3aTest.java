@@ -1,3 +1,12 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
 import components.set.Set;
 import components.set.Set1L;
 
@@ -16,4 +25,314 @@ public class Set3aTest extends SetTest {
         return new Set1L<String>();
     }
 
+    /**
+     * Creates and returns a {@code Set3a<String>} with the given entries.
+     *
+     * @param args
+     *            the entries for the set
+     * @return the constructed set
+     * @requires [every entry in args is unique]
+     * @ensures createFromArgs = [entries in args]
+     */
+    private static Set3a<String> createFromArgs(String... args) {
+        Set3a<String> set = new Set3a<String>();
+        for (String s : args) {
+            set.add(s);
+        }
+        return set;
+    }
+
+    /**
+     * Creates and returns a reference {@code Set<String>} with the given
+     * entries.
+     *
+     * @param args
+     *            the entries for the set
+     * @return the constructed set
+     * @requires [every entry in args is unique]
+     * @ensures createFromArgsRef = [entries in args]
+     */
+    private static Set<String> createFromArgsRef(String... args) {
+        Set<String> set = new Set1L<String>();
+        for (String s : args) {
+            set.add(s);
+        }
+        return set;
+    }
+
+    /**
+     * Test split using a routine case.
+     */
+    @Test
+    public void testSplit() {
+        Set3a<String> test = createFromArgs("m", "c", "t", "a", "f", "p",
+                "x");
+        Set3a<String> upper = test.split("g");
+
+        assertEquals(createFromArgsRef("a", "c", "f"), test);
+        assertEquals(createFromArgsRef("m", "p", "t", "x"), upper);
+    }
+
+    /**
+     * Test split at an element of the set and past either end.
+     */
+    @Test
+    public void testSplitBoundaries() {
+        Set3a<String> test = createFromArgs("m", "c", "t");
+        assertEquals(createFromArgsRef("m", "t"), test.split("m"));
+        assertEquals(createFromArgsRef(), test.split("z"));
+        assertEquals(createFromArgsRef("c"), test.split(""));
+        assertEquals(createFromArgsRef(), test);
+    }
+
+    /**
+     * Test join in both orders.
+     */
+    @Test
+    public void testJoin() {
+        Set3a<String> low = createFromArgs("c", "a", "f");
+        Set3a<String> high = createFromArgs("p", "m", "x");
+        low.join(high);
+        assertEquals(createFromArgsRef("a", "c", "f", "m", "p", "x"), low);
+        assertEquals(createFromArgsRef(), high);
+
+        Set3a<String> other = createFromArgs("");
+        low.join(other);
+        assertEquals(createFromArgsRef("", "a", "c", "f", "m", "p", "x"),
+                low);
+        assertEquals(createFromArgsRef(), other);
+    }
+
+    /**
+     * Test removeRange using a routine case.
+     */
+    @Test
+    public void testRemoveRange() {
+        Set3a<String> test = createFromArgs("m", "c", "t", "a", "f", "p",
+                "x");
+        Set3a<String> removed = test.removeRange("c", "p");
+
+        assertEquals(createFromArgsRef("a", "p", "t", "x"), test);
+        assertEquals(createFromArgsRef("c", "f", "m"), removed);
+    }
+
+    /**
+     * Test removeRange with an empty range.
+     */
+    @Test
+    public void testRemoveRangeEmpty() {
+        Set3a<String> test = createFromArgs("m", "c", "t");
+        Set3a<String> removed = test.removeRange("m", "m");
+
+        assertEquals(createFromArgsRef("c", "m", "t"), test);
+        assertEquals(createFromArgsRef(), removed);
+    }
+
+    /**
+     * Test that a rebuild on skewed accesses lowers the expected search cost
+     * and keeps the elements.
+     */
+    @Test
+    public void testRebuildByAccessFrequency() {
+        Set3a<String> test = createFromArgs("a", "b", "c", "d", "e", "f", "g");
+        test.enableAccessSampling(1, 0);
+        for (int i = 0; i < 100; i++) {
+            test.contains("g");
+        }
+        test.contains("a");
+
+        double before = test.expectedComparisons();
+        double after = test.rebuildByAccessFrequency();
+
+        assertTrue(after < before);
+        assertEquals(after, test.expectedComparisons(), 1e-9);
+        assertEquals(createFromArgsRef("a", "b", "c", "d", "e", "f", "g"),
+                test);
+    }
+
+    /**
+     * Test that reaching the rebuild threshold flags a rebuild without running
+     * it inside contains.
+     */
+    @Test
+    public void testRebuildThreshold() {
+        Set3a<String> test = createFromArgs("a", "b", "c", "d", "e");
+        test.enableAccessSampling(2, 10);
+        int height = test.height();
+        for (int i = 0; i < 18; i++) {
+            test.contains("e");
+        }
+        assertTrue(!test.isRebuildDue());
+        test.contains("e");
+        test.contains("e");
+        assertTrue(test.isRebuildDue());
+        assertEquals(height, test.height());
+
+        double before = test.expectedComparisons();
+        assertTrue(test.rebuildByAccessFrequency() < before);
+        assertTrue(!test.isRebuildDue());
+        assertEquals(createFromArgsRef("a", "b", "c", "d", "e"), test);
+    }
+
+    /**
+     * Test that precondition checks and equals are not sampled as accesses.
+     */
+    @Test
+    public void testSamplingIgnoresInternalLookups() {
+        Set3a<String> test = createFromArgs("a", "b", "c");
+        Set3a<String> other = createFromArgs("a", "b", "c");
+        test.enableAccessSampling(1, 1);
+        other.enableAccessSampling(1, 1);
+        test.remove("b");
+        test.add("b");
+        assertEquals(other, test);
+        assertEquals(test, other);
+
+        assertTrue(!test.isRebuildDue());
+        assertTrue(!other.isRebuildDue());
+    }
+
+    /**
+     * Test that without sampling the rebuild balances the tree.
+     */
+    @Test
+    public void testRebuildUniform() {
+        Set3a<String> test = createFromArgs("a", "b", "c", "d", "e", "f", "g");
+
+        assertEquals(4.0, test.expectedComparisons(), 1e-9);
+        assertEquals(17.0 / 7, test.rebuildByAccessFrequency(), 1e-9);
+        assertEquals(createFromArgsRef("a", "b", "c", "d", "e", "f", "g"),
+                test);
+    }
+
+    /**
+     * Test applyBatch with a batch small enough to apply element by element.
+     */
+    @Test
+    public void testApplyBatchSmall() {
+        Set3a<String> test = createFromArgs("m", "c", "t", "a", "f", "p",
+                "x", "b", "d", "e", "g", "h", "i", "j", "k", "l", "n");
+        test.applyBatch(Arrays.asList("o"), Arrays.asList("a"));
+
+        assertEquals(createFromArgsRef("m", "c", "t", "o", "f", "p", "x",
+                "b", "d", "e", "g", "h", "i", "j", "k", "l", "n"), test);
+    }
+
+    /**
+     * Test applyBatch with a batch large enough to merge and rebuild.
+     */
+    @Test
+    public void testApplyBatchMerge() {
+        Set3a<String> test = createFromArgs("m", "c", "t");
+        test.applyBatch(Arrays.asList("", "a", "d", "z"),
+                Arrays.asList("c", "t"));
+
+        assertEquals(createFromArgsRef("", "a", "d", "m", "z"), test);
+    }
+
+    /**
+     * Test applyUpdates with a batch small enough to apply key by key.
+     */
+    @Test
+    public void testApplyUpdatesSmall() {
+        Set3a<String> test = createFromArgs("m", "c", "t", "a", "f", "p",
+                "x", "b", "d", "e", "g", "h", "i", "j", "k", "l", "n");
+        boolean[] wasPresent = test.applyUpdates(Arrays.asList("a", "o"),
+                Arrays.asList(Set3a.Update.ADD, Set3a.Update.REMOVE));
+
+        assertTrue(wasPresent[0]);
+        assertTrue(!wasPresent[1]);
+        assertEquals(createFromArgsRef("m", "c", "t", "a", "f", "p", "x",
+                "b", "d", "e", "g", "h", "i", "j", "k", "l", "n"), test);
+    }
+
+    /**
+     * Test applyUpdates with a batch large enough to merge and rebuild.
+     */
+    @Test
+    public void testApplyUpdatesMerge() {
+        Set3a<String> test = createFromArgs("m", "c", "t");
+        boolean[] wasPresent = test.applyUpdates(
+                Arrays.asList("a", "c", "d", "m", "t"),
+                Arrays.asList(Set3a.Update.REMOVE, Set3a.Update.REMOVE,
+                        Set3a.Update.ADD, Set3a.Update.LOOKUP,
+                        Set3a.Update.ADD));
+
+        assertEquals(Arrays.toString(
+                new boolean[] { false, true, false, true, true }),
+                Arrays.toString(wasPresent));
+        assertEquals(createFromArgsRef("d", "m", "t"), test);
+    }
+
+    /**
+     * Test that repeated removeAny drains every element exactly once.
+     */
+    @Test
+    public void testRemoveAnyDrains() {
+        Set3a<String> test = createFromArgs("m", "c", "t", "a", "f", "p",
+                "x");
+        Set<String> removed = createFromArgsRef();
+        while (test.size() > 0) {
+            removed.add(test.removeAny());
+        }
+
+        assertEquals(createFromArgsRef("a", "c", "f", "m", "p", "t", "x"),
+                removed);
+        assertEquals(createFromArgsRef(), test);
+    }
+
+    /**
+     * Test drainTo with a consumer, which sees the elements in order.
+     */
+    @Test
+    public void testDrainToConsumer() {
+        Set3a<String> test = createFromArgs("m", "c", "t", "", "f");
+        StringBuilder seen = new StringBuilder();
+        int count = test.drainTo(s -> seen.append(s).append(' '));
+
+        assertEquals(5, count);
+        assertEquals(" c f m t ", seen.toString());
+        assertEquals(createFromArgsRef(), test);
+    }
+
+    /**
+     * Test drainTo with a collection, and on an empty set.
+     */
+    @Test
+    public void testDrainToCollection() {
+        Set3a<String> test = createFromArgs("hello", "there", "general");
+        List<String> drained = new ArrayList<>();
+
+        assertEquals(3, test.drainTo(drained));
+        assertEquals(Arrays.asList("general", "hello", "there"), drained);
+        assertEquals(0, test.drainTo(drained));
+        assertEquals(3, drained.size());
+    }
+
+    /**
+     * Test that when the action throws, drainTo keeps the elements not yet
+     * passed to it.
+     */
+    @Test
+    public void testDrainToActionThrows() {
+        Set3a<String> test = createFromArgs("m", "c", "t", "a", "f", "p",
+                "x");
+        List<String> drained = new ArrayList<>();
+        boolean thrown = false;
+        try {
+            test.drainTo(s -> {
+                if (s.equals("p")) {
+                    throw new IllegalStateException(s);
+                }
+                drained.add(s);
+            });
+        } catch (IllegalStateException e) {
+            thrown = true;
+        }
+
+        assertTrue(thrown);
+        assertEquals(Arrays.asList("a", "c", "f", "m"), drained);
+        assertEquals(createFromArgsRef("p", "t", "x"), test);
+    }
+
 }
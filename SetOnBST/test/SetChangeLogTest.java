@@ -0,0 +1,164 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import components.set.Set;
+
+/**
+ * JUnit test fixture for {@code SetChangeLog} replicating one {@code Set3a}
+ * into another through an in-memory byte stream.
+ *
+ * @author Shyam Sai Bethina and Yihone Chu
+ *
+ */
+public class SetChangeLogTest {
+
+    /**
+     * Codec used by every test.
+     */
+    private static final SetChangeLog.ElementCodec<String> CODEC = SetChangeLog
+            .stringCodec();
+
+    /**
+     * Ships every entry of {@code log} after {@code lastApplied} to
+     * {@code replica} and returns the new last applied sequence number.
+     *
+     * @param log
+     *            the primary's change log
+     * @param replica
+     *            the replica to update
+     * @param lastApplied
+     *            the last sequence number already applied to replica
+     * @return the new last applied sequence number
+     * @throws IOException
+     *             if encoding or decoding fails
+     */
+    private static long ship(SetChangeLog<String> log, Set<String> replica,
+            long lastApplied) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        log.writeDelta(new DataOutputStream(bytes), lastApplied, CODEC);
+        return SetChangeLog.applyDelta(
+                new DataInputStream(
+                        new ByteArrayInputStream(bytes.toByteArray())),
+                replica, lastApplied, CODEC);
+    }
+
+    /**
+     * Test a replica catching up over several incremental deltas.
+     *
+     * @throws IOException
+     *             if encoding or decoding fails
+     */
+    @Test
+    public void testIncrementalCatchUp() throws IOException {
+        Set3a<String> primary = new Set3a<String>();
+        SetChangeLog<String> log = new SetChangeLog<String>();
+        primary.setChangeLog(log);
+        Set<String> replica = new Set3a<String>();
+
+        primary.add("hello");
+        primary.add("there");
+        long applied = ship(log, replica, 0);
+        assertEquals(primary, replica);
+        assertEquals(2, applied);
+
+        primary.remove("hello");
+        primary.add("general");
+        primary.removeAny();
+        applied = ship(log, replica, applied);
+        assertEquals(primary, replica);
+        assertEquals(log.lastSequenceNumber(), applied);
+    }
+
+    /**
+     * Test that a clear and an empty delta replicate correctly.
+     *
+     * @throws IOException
+     *             if encoding or decoding fails
+     */
+    @Test
+    public void testClearAndEmptyDelta() throws IOException {
+        Set3a<String> primary = new Set3a<String>();
+        SetChangeLog<String> log = new SetChangeLog<String>();
+        primary.setChangeLog(log);
+        Set<String> replica = new Set3a<String>();
+
+        primary.add("");
+        primary.clear();
+        primary.add("kenobi");
+        long applied = ship(log, replica, 0);
+        applied = ship(log, replica, applied);
+        assertEquals(primary, replica);
+        assertEquals(3, applied);
+    }
+
+    /**
+     * Test that entries a replica already has are skipped, and truncation
+     * keeps the sequence numbering.
+     *
+     * @throws IOException
+     *             if encoding or decoding fails
+     */
+    @Test
+    public void testTruncateAndReapply() throws IOException {
+        Set3a<String> primary = new Set3a<String>();
+        SetChangeLog<String> log = new SetChangeLog<String>();
+        primary.setChangeLog(log);
+        Set<String> replica = new Set3a<String>();
+
+        primary.add("hello");
+        primary.add("there");
+        long applied = ship(log, replica, 0);
+        log.truncate(1);
+        primary.add("general");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        log.writeDelta(new DataOutputStream(bytes), 1, CODEC);
+        applied = SetChangeLog.applyDelta(
+                new DataInputStream(
+                        new ByteArrayInputStream(bytes.toByteArray())),
+                replica, applied, CODEC);
+        assertEquals(primary, replica);
+        assertEquals(3, applied);
+    }
+
+    /**
+     * Test that a drain cut short by its action logs one remove per element
+     * passed.
+     *
+     * @throws IOException
+     *             if encoding or decoding fails
+     */
+    @Test
+    public void testInterruptedDrain() throws IOException {
+        Set3a<String> primary = new Set3a<String>();
+        SetChangeLog<String> log = new SetChangeLog<String>();
+        primary.setChangeLog(log);
+        Set<String> replica = new Set3a<String>();
+        primary.add("hello");
+        primary.add("there");
+        primary.add("general");
+        primary.add("kenobi");
+        long applied = ship(log, replica, 0);
+
+        try {
+            primary.drainTo(x -> {
+                if (x.equals("kenobi")) {
+                    throw new IllegalStateException(x);
+                }
+            });
+        } catch (IllegalStateException e) {
+            applied = ship(log, replica, applied);
+        }
+        assertEquals(primary, replica);
+        assertEquals(2, primary.size());
+        assertEquals(6, applied);
+    }
+
+}
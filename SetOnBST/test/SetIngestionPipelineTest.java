@@ -0,0 +1,143 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code SetIngestionPipeline}.
+ *
+ * @author Shyam Sai Bethina and Yihone Chu
+ *
+ */
+public class SetIngestionPipelineTest {
+
+    /**
+     * Test that requests for one element take effect in submission order.
+     *
+     * @throws InterruptedException
+     *             if interrupted while closing
+     */
+    @Test
+    public void testSubmissionOrder() throws InterruptedException {
+        Set3a<String> target = new Set3a<String>();
+        target.add("there");
+        SetIngestionPipeline<String> pipeline = new SetIngestionPipeline<>(
+                target, 16);
+
+        CompletableFuture<Boolean> add1 = pipeline.add("hello");
+        CompletableFuture<Boolean> add2 = pipeline.add("hello");
+        CompletableFuture<Boolean> contains = pipeline.contains("hello");
+        CompletableFuture<Boolean> remove1 = pipeline.remove("hello");
+        CompletableFuture<Boolean> remove2 = pipeline.remove("there");
+        CompletableFuture<Boolean> remove3 = pipeline.remove("general");
+        pipeline.close();
+
+        assertEquals(true, add1.join());
+        assertEquals(false, add2.join());
+        assertEquals(true, contains.join());
+        assertEquals(true, remove1.join());
+        assertEquals(true, remove2.join());
+        assertEquals(false, remove3.join());
+        assertEquals(0, target.size());
+    }
+
+    /**
+     * Test that a dependent stage may block on a later request and close the
+     * pipeline without stalling the writer.
+     *
+     * @throws InterruptedException
+     *             if interrupted while closing
+     */
+    @Test
+    public void testBlockingDependentStage() throws InterruptedException {
+        Set3a<String> target = new Set3a<String>();
+        SetIngestionPipeline<String> pipeline = new SetIngestionPipeline<>(
+                target, 16);
+
+        CompletableFuture<Boolean> hello = pipeline.add("hello");
+        CompletableFuture<Boolean> there = pipeline.add("there");
+        CompletableFuture<Boolean> chained = hello.thenApply(added -> {
+            assertTrue(!Thread.currentThread().getName()
+                    .equals("set-ingestion-writer"));
+            return pipeline.contains("there").join();
+        });
+        CompletableFuture<Void> closing = chained.thenRun(() -> {
+            try {
+                pipeline.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertEquals(true, there.join());
+        assertEquals(true, chained.join());
+        closing.join();
+        assertEquals(2, target.size());
+    }
+
+    /**
+     * Test that a request submitted after close is refused.
+     *
+     * @throws InterruptedException
+     *             if interrupted while closing
+     */
+    @Test
+    public void testSubmitAfterClose() throws InterruptedException {
+        SetIngestionPipeline<String> pipeline = new SetIngestionPipeline<>(
+                new Set3a<String>(), 16);
+        pipeline.close();
+
+        boolean refused = false;
+        try {
+            pipeline.add("hello");
+        } catch (IllegalStateException e) {
+            refused = true;
+        }
+        assertTrue(refused);
+    }
+
+    /**
+     * Test many producer threads adding distinct elements.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the producers
+     */
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        final int producers = 8;
+        final int perProducer = 300;
+        Set3a<String> target = new Set3a<String>();
+        SetIngestionPipeline<String> pipeline = new SetIngestionPipeline<>(
+                target, 64);
+
+        List<CompletableFuture<Boolean>> acks = new ArrayList<>();
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int id = p;
+            threads[p] = new Thread(() -> {
+                for (int k = 0; k < perProducer; k++) {
+                    CompletableFuture<Boolean> ack = pipeline.add(id + ":" + k);
+                    synchronized (acks) {
+                        acks.add(ack);
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        pipeline.close();
+
+        for (CompletableFuture<Boolean> ack : acks) {
+            assertTrue(ack.join());
+        }
+        assertEquals(producers * perProducer, target.size());
+        assertTrue(target.contains("7:299"));
+    }
+
+}
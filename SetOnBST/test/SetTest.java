@@ -152,7 +152,7 @@ public abstract class SetTest {
         String testRemoved = test.remove("hello");
 
         Set<String> expected = this.createFromArgsRef("hello");
-        String expectedRemoved = test.remove("hello");
+        String expectedRemoved = expected.remove("hello");
 
         assertEquals(expected, test);
         assertEquals(expectedRemoved, testRemoved);
@@ -167,7 +167,7 @@ public abstract class SetTest {
         String testRemoved = test.remove("there");
 
         Set<String> expected = this.createFromArgsRef("hello", "there");
-        String expectedRemoved = test.remove("there");
+        String expectedRemoved = expected.remove("there");
 
         assertEquals(expected, test);
         assertEquals(expectedRemoved, testRemoved);
@@ -183,7 +183,7 @@ public abstract class SetTest {
 
         Set<String> expected = this.createFromArgsRef("hello", "there",
                 "general");
-        String expectedRemoved = test.remove("general");
+        String expectedRemoved = expected.remove("general");
 
         assertEquals(expected, test);
         assertEquals(expectedRemoved, testRemoved);
@@ -198,7 +198,7 @@ public abstract class SetTest {
         String testRemoved = test.remove("");
 
         Set<String> expected = this.createFromArgsRef("");
-        String expectedRemoved = test.remove("");
+        String expectedRemoved = expected.remove("");
 
         assertEquals(expected, test);
         assertEquals(expectedRemoved, testRemoved);
@@ -0,0 +1,113 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code ShardedSet}.
+ */
+public class ShardedSetTest extends SetTest {
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new ShardedSet<String>(4);
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /**
+     * Test that addAll and removeAll match one-at-a-time adds and removes.
+     */
+    @Test
+    public void testAddAllRemoveAll() {
+        ShardedSet<String> test = new ShardedSet<String>(3);
+        test.addAll(Arrays.asList("hello", "there", "general", "", "kenobi"));
+        test.removeAll(Arrays.asList("there", ""));
+
+        Set<String> expected = new Set1L<String>();
+        expected.add("hello");
+        expected.add("general");
+        expected.add("kenobi");
+
+        assertEquals(expected, test);
+    }
+
+    /**
+     * Test that orderedIterator yields every element in increasing order.
+     */
+    @Test
+    public void testOrderedIterator() {
+        ShardedSet<String> test = new ShardedSet<String>(5);
+        test.addAll(Arrays.asList("m", "c", "t", "a", "f", "p", "x", ""));
+
+        Iterator<String> it = test.orderedIterator();
+        StringBuilder seen = new StringBuilder();
+        while (it.hasNext()) {
+            seen.append(it.next()).append(' ');
+        }
+
+        assertEquals(" a c f m p t x ", seen.toString());
+    }
+
+    /**
+     * Test that the shard sizes add up and locks are counted.
+     */
+    @Test
+    public void testMetrics() {
+        ShardedSet<String> test = new ShardedSet<String>(4);
+        test.addAll(Arrays.asList("hello", "there", "general", "kenobi"));
+
+        int total = 0;
+        long acquisitions = 0;
+        for (int i = 0; i < test.shardCount(); i++) {
+            total += test.shardSize(i);
+            acquisitions += test.lockAcquisitions(i);
+            assertTrue(test.contendedAcquisitions(i) <= test
+                    .lockAcquisitions(i));
+        }
+
+        assertEquals(4, test.shardCount());
+        assertEquals(4, total);
+        assertTrue(acquisitions > 0);
+    }
+
+    /**
+     * Test concurrent adds of disjoint elements from several threads.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    @Test
+    public void testConcurrentAdd() throws InterruptedException {
+        final int threads = 4;
+        final int perThread = 500;
+        ShardedSet<String> test = new ShardedSet<String>(8);
+
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            workers[t] = new Thread(() -> {
+                for (int k = 0; k < perThread; k++) {
+                    test.add(id + ":" + k);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(threads * perThread, test.size());
+        assertTrue(test.contains("3:499"));
+    }
+
+}